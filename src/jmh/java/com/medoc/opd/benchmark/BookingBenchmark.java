@@ -0,0 +1,102 @@
+package com.medoc.opd.benchmark;
+
+import com.medoc.opd.model.Token;
+import com.medoc.opd.service.OpdService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BookingBenchmark {
+    private static final AtomicLong SEEDS = new AtomicLong(42);
+
+    @Param({"100", "1000"})
+    int doctors;
+
+    @Param({"10", "50"})
+    int slotsPerDay;
+
+    @Param({"10"})
+    int capacity;
+
+    @Param({"SPARSE", "SATURATED"})
+    Occupancy occupancy;
+
+    @Param({"BALANCED", "WALK_IN_HEAVY"})
+    SourceMix mix;
+
+    @Param({"false", "true"})
+    boolean journaling;
+
+    EngineFixture fixture;
+    OpdService service;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        SplittableRandom random;
+
+        @Setup
+        public void setUp() {
+            random = new SplittableRandom(SEEDS.getAndIncrement());
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture = EngineFixture.start(journaling).populate(doctors, slotsPerDay, capacity, occupancy, mix, 7);
+        service = fixture.service();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fixture.close();
+    }
+
+    @Benchmark
+    public void bookThenCancel(Cursor cursor, Blackhole blackhole) {
+        try {
+            Token token = service.bookToken("Bench", mix.pick(cursor.random), fixture.doctor(cursor.random),
+                    EngineFixture.DAY);
+            blackhole.consume(token);
+            service.cancelToken(token.getId());
+        } catch (RuntimeException e) {
+            blackhole.consume(e);
+        }
+    }
+
+    @Benchmark
+    public void toggleNoShow(Cursor cursor, Blackhole blackhole) {
+        String tokenId = fixture.token(cursor.random);
+        try {
+            service.toggleNoShow(tokenId);
+            service.toggleNoShow(tokenId);
+        } catch (RuntimeException e) {
+            blackhole.consume(e);
+        }
+    }
+
+    @Benchmark
+    public void reduceSlotCapacity(Cursor cursor, Blackhole blackhole) {
+        String slotId = fixture.slot(cursor.random);
+        try {
+            service.resizeSlot(slotId, capacity / 2);
+            service.resizeSlot(slotId, capacity);
+        } catch (RuntimeException e) {
+            blackhole.consume(e);
+        }
+    }
+}
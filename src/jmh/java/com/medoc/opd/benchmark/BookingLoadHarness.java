@@ -0,0 +1,182 @@
+package com.medoc.opd.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.medoc.opd.OpdTokenEngineApplication;
+import com.medoc.opd.model.Doctor;
+import com.medoc.opd.service.OpdService;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives {@code POST /api/bookings} (then cancels the token) over HTTP with more concurrent clients than Tomcat has
+ * worker threads, once per request-execution mode: the platform-thread pool, virtual threads, and the async
+ * per-doctor pipeline. Virtual threads need a Java 21 runtime; on older runtimes that mode is skipped.
+ * Admission control is off so the comparison measures the thread model rather than shedding.
+ *
+ * <pre>
+ * mvn -Pjmh test-compile exec:exec -Djmh.main=com.medoc.opd.benchmark.BookingLoadHarness -Djmh.args="400 10 50"
+ * </pre>
+ * Arguments: concurrent clients, seconds per mode, Tomcat max threads.
+ */
+public final class BookingLoadHarness {
+    private static final int DOCTORS = 50;
+    private static final int REQUIRED_JAVA = 21;
+
+    private final int clients;
+    private final int seconds;
+    private final int tomcatThreads;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final HttpClient http = HttpClient.newHttpClient();
+
+    private BookingLoadHarness(int clients, int seconds, int tomcatThreads) {
+        this.clients = clients;
+        this.seconds = seconds;
+        this.tomcatThreads = tomcatThreads;
+    }
+
+    public static void main(String[] args) throws Exception {
+        BookingLoadHarness harness = new BookingLoadHarness(
+                args.length > 0 ? Integer.parseInt(args[0]) : 400,
+                args.length > 1 ? Integer.parseInt(args[1]) : 10,
+                args.length > 2 ? Integer.parseInt(args[2]) : 50);
+        System.out.printf("%d clients, %d s per mode, %d Tomcat threads, Java %d%n",
+                harness.clients, harness.seconds, harness.tomcatThreads, Runtime.version().feature());
+        System.out.printf("%-10s %12s %10s %10s %8s%n", "mode", "bookings/s", "p50 ms", "p99 ms", "errors");
+        harness.run("blocking", Map.of());
+        if (Runtime.version().feature() >= REQUIRED_JAVA) {
+            harness.run("virtual", Map.of("spring.threads.virtual.enabled", true));
+        } else {
+            System.out.printf("%-10s skipped: virtual threads need Java %d%n", "virtual", REQUIRED_JAVA);
+        }
+        harness.run("async", Map.of("opd.booking.async", true));
+    }
+
+    private void run(String mode, Map<String, Object> overrides) throws Exception {
+        List<String> args = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--server.tomcat.threads.max=" + tomcatThreads,
+                "--server.tomcat.max-connections=" + Math.max(8192, clients * 2),
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN",
+                "--opd.admission.enabled=false"));
+        overrides.forEach((key, value) -> args.add("--" + key + "=" + value));
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(OpdTokenEngineApplication.class)
+                .web(WebApplicationType.SERVLET)
+                .run(args.toArray(String[]::new))) {
+            String base = "http://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/api";
+            List<String> doctors = populate(context.getBean(OpdService.class));
+
+            AtomicLong errors = new AtomicLong();
+            List<Client> drivers = new ArrayList<>();
+            ExecutorService pool = Executors.newFixedThreadPool(clients);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+            for (int c = 0; c < clients; c++) {
+                Client client = new Client(new SplittableRandom(c));
+                drivers.add(client);
+                pool.execute(() -> drive(base, doctors, client, deadline, errors));
+            }
+            pool.shutdown();
+            pool.awaitTermination(seconds + 60L, TimeUnit.SECONDS);
+            report(mode, drivers, errors.get());
+        }
+    }
+
+    private List<String> populate(OpdService service) {
+        List<String> doctors = new ArrayList<>();
+        for (int d = 0; d < DOCTORS; d++) {
+            Doctor doctor = service.onboardDoctor("Doctor " + d, "Spec " + (d % 10));
+            LocalTime start = LocalTime.of(8, 0);
+            for (int s = 0; s < 10; s++) {
+                service.createSlot(doctor.getId(), EngineFixture.DAY, start, start.plusMinutes(10), 10);
+                start = start.plusMinutes(10);
+            }
+            doctors.add(doctor.getId());
+        }
+        return doctors;
+    }
+
+    private void drive(String base, List<String> doctors, Client client, long deadline, AtomicLong errors) {
+        SplittableRandom random = client.random;
+        while (System.nanoTime() < deadline) {
+            String body = "{\"doctorId\":\"" + doctors.get(random.nextInt(doctors.size()))
+                    + "\",\"date\":\"" + EngineFixture.DAY
+                    + "\",\"patientName\":\"Load\",\"source\":\"" + SourceMix.BALANCED.pick(random) + "\"}";
+            long started = System.nanoTime();
+            try {
+                HttpResponse<String> response = http.send(post(base + "/bookings", body),
+                        HttpResponse.BodyHandlers.ofString());
+                long elapsed = System.nanoTime() - started;
+                if (response.statusCode() != 200) {
+                    errors.incrementAndGet();
+                    continue;
+                }
+                client.record(elapsed);
+                JsonNode token = mapper.readTree(response.body());
+                http.send(post(base + "/tokens/" + token.get("id").asText() + "/cancel", ""),
+                        HttpResponse.BodyHandlers.discarding());
+            } catch (Exception e) {
+                errors.incrementAndGet();
+            }
+        }
+    }
+
+    private static HttpRequest post(String uri, String body) {
+        return HttpRequest.newBuilder(URI.create(uri))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private void report(String mode, List<Client> drivers, long errors) {
+        long bookings = 0;
+        List<Long> all = new ArrayList<>();
+        for (Client client : drivers) {
+            bookings += client.count;
+            for (int i = 0; i < Math.min(client.count, client.samples.length); i++) {
+                all.add(client.samples[i]);
+            }
+        }
+        long[] sorted = all.stream().mapToLong(Long::longValue).toArray();
+        Arrays.sort(sorted);
+        System.out.printf("%-10s %12.0f %10.2f %10.2f %8d%n", mode, (double) bookings / seconds,
+                percentile(sorted, 0.50), percentile(sorted, 0.99), errors);
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        return sorted.length == 0 ? 0 : sorted[(int) Math.min(sorted.length - 1, sorted.length * quantile)] / 1e6;
+    }
+
+    private static final class Client {
+        private final SplittableRandom random;
+        private final long[] samples = new long[1 << 16];
+        private int count;
+
+        private Client(SplittableRandom random) {
+            this.random = random;
+        }
+
+        private void record(long latencyNanos) {
+            if (count < samples.length) {
+                samples[count] = latencyNanos;
+            }
+            count++;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.medoc.opd.benchmark;
+
+import com.medoc.opd.model.Token;
+import com.medoc.opd.model.TokenSource;
+import com.medoc.opd.service.OpdService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Every doctor's day is saturated with a walk-in heavy mix, so each EMERGENCY booking displaces one token
+ * per slot down the whole day. The walk-in booked afterwards restores the saturated state.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CascadeBenchmark {
+    @Param({"100"})
+    int doctors;
+
+    @Param({"10", "30", "50"})
+    int slotsPerDay;
+
+    @Param({"10"})
+    int capacity;
+
+    EngineFixture fixture;
+    OpdService service;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        SplittableRandom random = new SplittableRandom();
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        fixture = EngineFixture.start(false)
+                .populate(doctors, slotsPerDay, capacity, Occupancy.SATURATED, SourceMix.WALK_IN_HEAVY, 11);
+        service = fixture.service();
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        fixture.close();
+    }
+
+    @Benchmark
+    public void emergencyCascade(Cursor cursor, Blackhole blackhole) {
+        String doctorId = fixture.doctor(cursor.random);
+        try {
+            Token emergency = service.bookToken("Emergency", TokenSource.EMERGENCY, doctorId, EngineFixture.DAY);
+            service.cancelToken(emergency.getId());
+            blackhole.consume(service.bookToken("Walk-in", TokenSource.WALK_IN, doctorId, EngineFixture.DAY));
+        } catch (RuntimeException e) {
+            blackhole.consume(e);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.medoc.opd.benchmark;
+
+import com.medoc.opd.OpdTokenEngineApplication;
+import com.medoc.opd.model.Doctor;
+import com.medoc.opd.model.OpdSlot;
+import com.medoc.opd.model.Token;
+import com.medoc.opd.model.TokenSource;
+import com.medoc.opd.service.OpdService;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+public final class EngineFixture implements AutoCloseable {
+    public static final LocalDate DAY = LocalDate.of(2030, 1, 7);
+
+    private final ConfigurableApplicationContext context;
+    private final OpdService service;
+    private final List<String> doctorIds = new ArrayList<>();
+    private final List<String> slotIds = new ArrayList<>();
+    private final List<String> tokenIds = new ArrayList<>();
+
+    private EngineFixture(ConfigurableApplicationContext context) {
+        this.context = context;
+        this.service = context.getBean(OpdService.class);
+    }
+
+    public static EngineFixture start(boolean journaling) {
+        return start(journaling, Map.of());
+    }
+
+    public static EngineFixture start(boolean journaling, Map<String, Object> overrides) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("logging.level.com.medoc.opd", "WARN");
+        properties.put("spring.main.banner-mode", "off");
+        properties.put("opd.persistence.enabled", journaling);
+        if (journaling) {
+            try {
+                properties.put("opd.persistence.dir", Files.createTempDirectory("opd-bench").toString());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            properties.put("opd.persistence.snapshot-interval-ms", 3_600_000);
+        }
+        properties.putAll(overrides);
+        String[] args = properties.entrySet().stream()
+                .map(e -> "--" + e.getKey() + "=" + e.getValue())
+                .toArray(String[]::new);
+        return new EngineFixture(new SpringApplicationBuilder(OpdTokenEngineApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(args));
+    }
+
+    public EngineFixture populate(int doctors, int slotsPerDay, int capacity, Occupancy occupancy,
+                                  SourceMix mix, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int d = 0; d < doctors; d++) {
+            Doctor doctor = service.onboardDoctor("Doctor " + d, "Spec " + (d % 20));
+            doctorIds.add(doctor.getId());
+            LocalTime start = LocalTime.of(8, 0);
+            for (int s = 0; s < slotsPerDay; s++) {
+                OpdSlot slot = service.createSlot(doctor.getId(), DAY, start, start.plusMinutes(10), capacity);
+                slotIds.add(slot.getId());
+                start = start.plusMinutes(10);
+            }
+            int bookings = (int) (slotsPerDay * capacity * occupancy.fill());
+            for (int b = 0; b < bookings; b++) {
+                book(doctor.getId(), mix.pick(random));
+            }
+        }
+        return this;
+    }
+
+    public Token book(String doctorId, TokenSource source) {
+        try {
+            Token token = service.bookToken("Patient", source, doctorId, DAY);
+            tokenIds.add(token.getId());
+            return token;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    public OpdService service() {
+        return service;
+    }
+
+    public String doctor(SplittableRandom random) {
+        return doctorIds.get(random.nextInt(doctorIds.size()));
+    }
+
+    public String slot(SplittableRandom random) {
+        return slotIds.get(random.nextInt(slotIds.size()));
+    }
+
+    public String token(SplittableRandom random) {
+        return tokenIds.get(random.nextInt(tokenIds.size()));
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+}
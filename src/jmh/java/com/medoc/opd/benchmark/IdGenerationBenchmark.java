@@ -0,0 +1,78 @@
+package com.medoc.opd.benchmark;
+
+import com.medoc.opd.model.Doctor;
+import com.medoc.opd.model.Token;
+import com.medoc.opd.service.IdGenerator;
+import com.medoc.opd.service.OpdService;
+import com.medoc.opd.service.SnowflakeIdGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Raw generate-and-hash cost of random UUID strings against Snowflake keys, plus the engine paths that mint
+ * ids: onboarding a doctor and booking into a fresh slot.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class IdGenerationBenchmark {
+    IdGenerator snowflake = new SnowflakeIdGenerator(1, 2);
+    EngineFixture fixture;
+    OpdService service;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        SplittableRandom random = new SplittableRandom();
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture = EngineFixture.start(false)
+                .populate(100, 10, 10, Occupancy.SPARSE, SourceMix.BALANCED, 5);
+        service = fixture.service();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fixture.close();
+    }
+
+    @Benchmark
+    public int uuidKey() {
+        return UUID.randomUUID().toString().hashCode();
+    }
+
+    @Benchmark
+    public int snowflakeKey() {
+        return snowflake.nextKey().hashCode();
+    }
+
+    @Benchmark
+    public Doctor onboardDoctor() {
+        return service.onboardDoctor("Doctor", "General");
+    }
+
+    @Benchmark
+    public void bookThenCancel(Cursor cursor, Blackhole blackhole) {
+        try {
+            Token token = service.bookToken("Bench", SourceMix.BALANCED.pick(cursor.random),
+                    fixture.doctor(cursor.random), EngineFixture.DAY);
+            service.cancelToken(token.getId());
+            blackhole.consume(token);
+        } catch (RuntimeException e) {
+            blackhole.consume(e);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.medoc.opd.benchmark;
+
+public enum Occupancy {
+    SPARSE(0.3),
+    SATURATED(1.0);
+
+    private final double fill;
+
+    Occupancy(double fill) {
+        this.fill = fill;
+    }
+
+    public double fill() {
+        return fill;
+    }
+}
@@ -0,0 +1,69 @@
+package com.medoc.opd.benchmark;
+
+import com.medoc.opd.model.Token;
+import com.medoc.opd.service.OpdService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Book-then-cancel across many doctors from every available core, varying the number of engine shards.
+ * With one shard every call serialises on the same lock; throughput should grow with the shard count
+ * until it reaches the thread count.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(Threads.MAX)
+public class ShardScalingBenchmark {
+    @Param({"1", "4", "16", "64"})
+    int shards;
+
+    @Param({"500"})
+    int doctors;
+
+    EngineFixture fixture;
+    OpdService service;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        SplittableRandom random = new SplittableRandom();
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture = EngineFixture.start(false, Map.of("opd.engine.shards", shards))
+                .populate(doctors, 10, 10, Occupancy.SPARSE, SourceMix.BALANCED, 13);
+        service = fixture.service();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fixture.close();
+    }
+
+    @Benchmark
+    public void bookThenCancel(Cursor cursor, Blackhole blackhole) {
+        try {
+            Token token = service.bookToken("Bench", SourceMix.BALANCED.pick(cursor.random),
+                    fixture.doctor(cursor.random), EngineFixture.DAY);
+            service.cancelToken(token.getId());
+            blackhole.consume(token);
+        } catch (RuntimeException e) {
+            blackhole.consume(e);
+        }
+    }
+}
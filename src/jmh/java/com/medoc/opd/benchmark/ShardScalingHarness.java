@@ -0,0 +1,141 @@
+package com.medoc.opd.benchmark;
+
+import com.medoc.opd.model.Token;
+import com.medoc.opd.service.OpdService;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs book-then-cancel in 1..N engine processes at once, each owning a disjoint set of doctors as if the shards had
+ * been split across JVMs, and reports the combined throughput against a single process. Every worker gets its own
+ * {@code opd.id.node}, so ids stay unique across processes. Scaling is capped by the cores on the machine: process
+ * counts above the core count only show contention.
+ *
+ * <pre>
+ * mvn -Pjmh test-compile exec:exec -Djmh.main=com.medoc.opd.benchmark.ShardScalingHarness -Djmh.args="1,2,4 10"
+ * </pre>
+ */
+public final class ShardScalingHarness {
+    private static final String WORKER = "--worker";
+    private static final String READY = "READY";
+    private static final String RESULT = "RESULT";
+    private static final int DOCTORS_PER_PROCESS = 200;
+
+    private ShardScalingHarness() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals(WORKER)) {
+            worker(Integer.parseInt(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+            return;
+        }
+        int[] processCounts = Arrays.stream((args.length > 0 ? args[0] : "1,2,4").split(","))
+                .mapToInt(Integer::parseInt)
+                .toArray();
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        System.out.printf("%d cores, %d s per run, %d doctors per process%n", cores, seconds, DOCTORS_PER_PROCESS);
+        System.out.printf("%-10s %14s %9s%n", "processes", "ops/s", "speedup");
+        double perProcess = 0;
+        for (int processes : processCounts) {
+            double throughput = run(processes, seconds);
+            if (perProcess == 0) {
+                perProcess = throughput / processes;
+            }
+            System.out.printf("%-10d %14.0f %8.2fx%s%n", processes, throughput, throughput / perProcess,
+                    processes > cores ? "  (more processes than cores)" : "");
+        }
+    }
+
+    private static double run(int processes, int seconds) throws IOException, InterruptedException {
+        List<Process> workers = new ArrayList<>();
+        List<BufferedReader> outputs = new ArrayList<>();
+        try {
+            for (int node = 0; node < processes; node++) {
+                Process worker = new ProcessBuilder(javaExecutable(), "-cp", System.getProperty("java.class.path"),
+                        ShardScalingHarness.class.getName(), WORKER,
+                        Integer.toString(node), Integer.toString(processes), Integer.toString(seconds))
+                        .redirectError(ProcessBuilder.Redirect.INHERIT)
+                        .start();
+                workers.add(worker);
+                outputs.add(new BufferedReader(new InputStreamReader(worker.getInputStream(), StandardCharsets.UTF_8)));
+            }
+            for (BufferedReader output : outputs) {
+                await(output, READY);
+            }
+            for (Process worker : workers) {
+                OutputStream go = worker.getOutputStream();
+                go.write('\n');
+                go.flush();
+            }
+            double total = 0;
+            for (BufferedReader output : outputs) {
+                String[] result = await(output, RESULT).split(" ");
+                total += Long.parseLong(result[1]) / (Long.parseLong(result[2]) / 1e9);
+            }
+            for (Process worker : workers) {
+                worker.waitFor(30, TimeUnit.SECONDS);
+            }
+            return total;
+        } finally {
+            workers.forEach(Process::destroyForcibly);
+        }
+    }
+
+    private static String await(BufferedReader output, String prefix) throws IOException {
+        String line;
+        while ((line = output.readLine()) != null) {
+            if (line.startsWith(prefix)) {
+                return line;
+            }
+        }
+        throw new IllegalStateException("Worker exited before reporting " + prefix);
+    }
+
+    private static String javaExecutable() {
+        return Path.of(System.getProperty("java.home"), "bin", "java").toString();
+    }
+
+    private static void worker(int node, int nodes, int seconds) throws IOException {
+        try (EngineFixture fixture = EngineFixture.start(false, Map.of(
+                "opd.id.node", node,
+                "opd.id.nodes", nodes,
+                "logging.level.root", "WARN"))) {
+            fixture.populate(DOCTORS_PER_PROCESS, 10, 10, Occupancy.SPARSE, SourceMix.BALANCED, 13 + node);
+            OpdService service = fixture.service();
+            SplittableRandom random = new SplittableRandom(node);
+
+            System.out.println(READY);
+            System.out.flush();
+            System.in.read();
+
+            long operations = 0;
+            long started = System.nanoTime();
+            long deadline = started + TimeUnit.SECONDS.toNanos(seconds);
+            while (System.nanoTime() < deadline) {
+                try {
+                    Token token = service.bookToken("Bench", SourceMix.BALANCED.pick(random),
+                            fixture.doctor(random), EngineFixture.DAY);
+                    service.cancelToken(token.getId());
+                } catch (RuntimeException e) {
+                    // a full day is part of the workload
+                }
+                operations++;
+            }
+            System.out.println(RESULT + " " + operations + " " + (System.nanoTime() - started));
+            System.out.flush();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.medoc.opd.benchmark;
+
+import com.medoc.opd.model.TokenSource;
+
+import java.util.SplittableRandom;
+
+public enum SourceMix {
+    BALANCED(20, 20, 20, 20, 20),
+    WALK_IN_HEAVY(2, 5, 13, 30, 50),
+    EMERGENCY_HEAVY(30, 20, 20, 15, 15);
+
+    private static final TokenSource[] SOURCES = TokenSource.values();
+    private final int[] cumulative;
+
+    SourceMix(int... weights) {
+        this.cumulative = new int[weights.length];
+        int sum = 0;
+        for (int i = 0; i < weights.length; i++) {
+            sum += weights[i];
+            cumulative[i] = sum;
+        }
+    }
+
+    public TokenSource pick(SplittableRandom random) {
+        int roll = random.nextInt(cumulative[cumulative.length - 1]);
+        for (int i = 0; i < cumulative.length; i++) {
+            if (roll < cumulative[i]) {
+                return SOURCES[i];
+            }
+        }
+        return SOURCES[SOURCES.length - 1];
+    }
+}
@@ -0,0 +1,106 @@
+package com.medoc.opd.benchmark;
+
+import com.medoc.opd.model.Token;
+import com.medoc.opd.model.TokenStatus;
+import com.medoc.opd.repository.TokenRepository;
+import com.medoc.opd.service.IdGenerator;
+import com.medoc.opd.service.SnowflakeIdGenerator;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Retained heap per finished token: the original map of Token objects against TokenRepository, which moves
+ * CANCELLED and COMPLETED tokens into its columnar store. Read the bytesPerToken counter, not the score.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class TokenFootprintBenchmark {
+    @Param({"OBJECT_MAP", "REPOSITORY"})
+    String store;
+
+    @Param({"1000000"})
+    int tokens;
+
+    Object retained;
+    IdGenerator ids = new SnowflakeIdGenerator(1, 2);
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Footprint {
+        public long bytesPerToken;
+    }
+
+    @Setup(Level.Invocation)
+    public void release() {
+        retained = null;
+        usedHeap();
+    }
+
+    @Benchmark
+    public Object fill(Footprint footprint) {
+        long before = usedHeap();
+        Object holder = "OBJECT_MAP".equals(store) ? fillObjectMap() : fillRepository();
+        long after = usedHeap();
+        footprint.bytesPerToken = (after - before) / tokens;
+        retained = holder;
+        return holder;
+    }
+
+    private Map<String, Token> fillObjectMap() {
+        Map<String, Token> map = new ConcurrentHashMap<>();
+        SplittableRandom random = new SplittableRandom(3);
+        for (int i = 0; i < tokens; i++) {
+            Token token = finishedToken(i, random);
+            map.put(token.getId(), token);
+        }
+        return map;
+    }
+
+    private TokenRepository fillRepository() {
+        TokenRepository repository = new TokenRepository();
+        SplittableRandom random = new SplittableRandom(3);
+        for (int i = 0; i < tokens; i++) {
+            repository.save(finishedToken(i, random));
+        }
+        return repository;
+    }
+
+    private Token finishedToken(int i, SplittableRandom random) {
+        Token token = new Token(ids.nextKey(), "Patient " + i, SourceMix.BALANCED.pick(random));
+        if (random.nextBoolean()) {
+            token.setStatus(TokenStatus.COMPLETED);
+            token.setAssignedSlotId(ids.nextKey());
+        } else {
+            token.setStatus(TokenStatus.CANCELLED);
+        }
+        return token;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,105 @@
+package com.medoc.opd.benchmark;
+
+import com.medoc.opd.model.OpdEvent;
+import com.medoc.opd.model.OpdEventType;
+import com.medoc.opd.model.Token;
+import com.medoc.opd.model.TokenStatus;
+import com.medoc.opd.repository.TokenRepository;
+import com.medoc.opd.service.IdGenerator;
+import com.medoc.opd.service.SnowflakeIdGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of keeping the patient, status and slot indexes current on the booking hot path: saving a freshly
+ * allocated token and re-indexing it after a status transition, against the plain token map the repository
+ * used before. BookingBenchmark gives the end-to-end booking latency the difference should be read against.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TokenIndexBenchmark {
+    @Param({"OBJECT_MAP", "REPOSITORY"})
+    String store;
+
+    @Param({"100000"})
+    int liveTokens;
+
+    @Param({"1000"})
+    int slots;
+
+    IdGenerator ids = new SnowflakeIdGenerator(1, 2);
+    Map<String, Token> map;
+    TokenRepository repository;
+    String[] slotIds;
+    Token[] population;
+    SplittableRandom random;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        random = new SplittableRandom(11);
+        slotIds = new String[slots];
+        for (int i = 0; i < slots; i++) {
+            slotIds[i] = ids.nextKey();
+        }
+        map = new ConcurrentHashMap<>();
+        repository = new TokenRepository();
+        population = new Token[liveTokens];
+        for (int i = 0; i < liveTokens; i++) {
+            population[i] = activeToken();
+            save(population[i]);
+        }
+    }
+
+    @Benchmark
+    public Token book() {
+        Token token = activeToken();
+        save(token);
+        return token;
+    }
+
+    @Benchmark
+    public Token noShowToggle() {
+        Token token = population[random.nextInt(liveTokens)];
+        token.setStatus(token.getStatus() == TokenStatus.ACTIVE ? TokenStatus.NO_SHOW : TokenStatus.ACTIVE);
+        if ("OBJECT_MAP".equals(store)) {
+            map.put(token.getId(), token);
+        } else {
+            repository.onEvent(OpdEvent.forToken(OpdEventType.TOKEN_NO_SHOW, "doctor", token, null));
+        }
+        return token;
+    }
+
+    private void save(Token token) {
+        if ("OBJECT_MAP".equals(store)) {
+            map.put(token.getId(), token);
+        } else {
+            repository.save(token);
+        }
+    }
+
+    private Token activeToken() {
+        Token token = new Token(ids.nextKey(), "Patient " + random.nextInt(liveTokens / 2),
+                SourceMix.BALANCED.pick(random));
+        token.setAssignedSlotId(slotIds[random.nextInt(slots)]);
+        return token;
+    }
+}
@@ -0,0 +1,23 @@
+package com.medoc.opd.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * The build targets Java 17, where Spring Boot silently ignores {@code spring.threads.virtual.enabled}. Refuse to
+ * start instead, so a deployment that asked for virtual threads never runs on the platform-thread pool unnoticed.
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadsConfig {
+    static final int REQUIRED_JAVA = 21;
+
+    public VirtualThreadsConfig() {
+        int running = Runtime.version().feature();
+        if (running < REQUIRED_JAVA) {
+            throw new IllegalStateException("spring.threads.virtual.enabled needs a Java " + REQUIRED_JAVA
+                    + "+ runtime, but this is Java " + running + ". Run the jar on Java " + REQUIRED_JAVA
+                    + " or unset OPD_VIRTUAL_THREADS.");
+        }
+    }
+}
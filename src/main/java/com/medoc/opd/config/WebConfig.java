@@ -1,11 +1,22 @@
 package com.medoc.opd.config;
 
+import com.medoc.opd.service.CommitBarrier;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.HandlerInterceptor;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 @Configuration
+@RequiredArgsConstructor
 public class WebConfig implements WebMvcConfigurer {
+    private final CommitBarrier commitBarrier;
 
     @Override
     public void addCorsMappings(CorsRegistry registry) {
@@ -14,4 +25,26 @@ public class WebConfig implements WebMvcConfigurer {
                 .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
                 .allowedHeaders("*");
     }
+
+    /**
+     * Once the journal has failed, changes can no longer be made durable: reads keep being served, changes are
+     * refused before they touch the engine.
+     */
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new HandlerInterceptor() {
+            @Override
+            public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+                    throws Exception {
+                if (!commitBarrier.isReadOnly() || HttpMethod.GET.matches(request.getMethod())
+                        || HttpMethod.OPTIONS.matches(request.getMethod())) {
+                    return true;
+                }
+                response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+                response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+                response.getWriter().write("{\"error\":\"The engine is read-only until restarted.\"}");
+                return false;
+            }
+        });
+    }
 }
@@ -1,17 +1,35 @@
 package com.medoc.opd.controller;
 
+import com.medoc.opd.model.BookingItem;
+import com.medoc.opd.model.BookingResult;
 import com.medoc.opd.model.Doctor;
 import com.medoc.opd.model.OpdSlot;
+import com.medoc.opd.model.ScheduleTemplate;
 import com.medoc.opd.model.Token;
+import com.medoc.opd.model.TokenMove;
 import com.medoc.opd.model.TokenSource;
+import com.medoc.opd.model.TokenStatus;
+import com.medoc.opd.service.AdmissionRejectedException;
+import com.medoc.opd.service.BookingPipeline;
+import com.medoc.opd.service.EngineReadOnlyException;
+import com.medoc.opd.service.EtaService;
 import com.medoc.opd.service.OpdService;
+import com.medoc.opd.service.ScheduleService;
+import com.medoc.opd.service.SlotStreamService;
+import com.medoc.opd.service.SlotViewCache;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.time.DayOfWeek;
 import java.time.LocalTime;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import java.time.LocalDate;
 
@@ -20,12 +38,29 @@ import java.time.LocalDate;
 @RequiredArgsConstructor
 public class OpdController {
     private final OpdService opdService;
+    private final SlotStreamService slotStreamService;
+    private final BookingPipeline bookingPipeline;
+    private final SlotViewCache slotViewCache;
+    private final ScheduleService scheduleService;
+    private final EtaService etaService;
 
     @ExceptionHandler(RuntimeException.class)
     public ResponseEntity<java.util.Map<String, String>> handleException(RuntimeException e) {
         return ResponseEntity.badRequest().body(java.util.Map.of("error", e.getMessage()));
     }
 
+    @ExceptionHandler(EngineReadOnlyException.class)
+    public ResponseEntity<java.util.Map<String, String>> handleReadOnly(EngineReadOnlyException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(java.util.Map.of("error", e.getMessage()));
+    }
+
+    @ExceptionHandler(AdmissionRejectedException.class)
+    public ResponseEntity<java.util.Map<String, String>> handleAdmissionRejected(AdmissionRejectedException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(java.util.Map.of("error", e.getMessage()));
+    }
+
     @PostMapping("/doctors")
     public ResponseEntity<Doctor> createDoctor(@RequestParam String name, @RequestParam String specialization) {
         return ResponseEntity.ok(opdService.onboardDoctor(name, specialization));
@@ -33,19 +68,54 @@ public class OpdController {
 
     @PostMapping("/slots")
     public ResponseEntity<OpdSlot> createSlot(@RequestBody SlotRequest request) {
-        return ResponseEntity.ok(opdService.createSlot(
-                request.getDoctorId(),
-                LocalDate.parse(request.getDate()),
-                LocalTime.parse(request.getStartTime()),
-                LocalTime.parse(request.getEndTime()),
-                request.getCapacity()));
+        LocalDate date = LocalDate.parse(request.getDate());
+        LocalTime start = LocalTime.parse(request.getStartTime());
+        LocalTime end = LocalTime.parse(request.getEndTime());
+        return ResponseEntity.ok(opdService.createSlot(request.getDoctorId(), date, start, end, request.getCapacity()));
+    }
+
+    @PostMapping("/doctors/{doctorId}/templates")
+    public ResponseEntity<ScheduleTemplate> addTemplate(@PathVariable String doctorId,
+                                                        @RequestBody TemplateRequest request) {
+        LocalTime start = LocalTime.parse(request.getSessionStart());
+        LocalTime end = LocalTime.parse(request.getSessionEnd());
+        return ResponseEntity.ok(scheduleService.addTemplate(doctorId, request.getDayOfWeek(), start, end,
+                request.getSlotMinutes(), request.getCapacity()));
+    }
+
+    @GetMapping("/doctors/{doctorId}/templates")
+    public ResponseEntity<List<ScheduleTemplate>> getTemplates(@PathVariable String doctorId) {
+        return ResponseEntity.ok(scheduleService.getTemplates(doctorId));
+    }
+
+    @PostMapping("/schedules/generate")
+    public ResponseEntity<java.util.Map<String, Integer>> generateSchedule(@RequestParam String from,
+                                                                           @RequestParam String to) {
+        return ResponseEntity.ok(java.util.Map.of("slotsCreated",
+                scheduleService.generate(LocalDate.parse(from), LocalDate.parse(to))));
     }
 
     @PostMapping("/bookings")
-    public ResponseEntity<Token> bookToken(@RequestBody BookingRequest request) {
-        return ResponseEntity
-                .ok(opdService.bookToken(request.getPatientName(), request.getSource(), request.getDoctorId(),
-                        LocalDate.parse(request.getDate())));
+    public CompletableFuture<ResponseEntity<Token>> bookToken(@RequestBody BookingRequest request) {
+        LocalDate date = LocalDate.parse(request.getDate());
+        return bookingPipeline
+                .book(request.getPatientName(), request.getSource(), request.getDoctorId(), date)
+                .thenApply(ResponseEntity::ok);
+    }
+
+    @PostMapping("/bookings/earliest")
+    public ResponseEntity<Token> bookEarliest(@RequestBody EarliestBookingRequest request) {
+        LocalDate date = LocalDate.parse(request.getDate());
+        return ResponseEntity.ok(bookingPipeline.bookEarliest(request.getPatientName(), request.getSource(),
+                request.getSpecialization(), date));
+    }
+
+    @PostMapping("/bookings/batch")
+    public ResponseEntity<List<BookingResult>> bookTokens(@RequestBody List<BookingRequest> requests) {
+        List<BookingItem> items = requests.stream()
+                .map(r -> new BookingItem(r.getPatientName(), r.getSource(), r.getDoctorId(), LocalDate.parse(r.getDate())))
+                .toList();
+        return ResponseEntity.ok(bookingPipeline.bookBatch(items));
     }
 
     @PostMapping("/tokens/{id}/cancel")
@@ -54,9 +124,45 @@ public class OpdController {
         return ResponseEntity.ok().build();
     }
 
+    @PostMapping("/tokens/{id}/complete")
+    public ResponseEntity<Void> completeToken(@PathVariable String id) {
+        opdService.completeToken(id);
+        return ResponseEntity.ok().build();
+    }
+
+    @GetMapping("/tokens/{id}/eta")
+    public ResponseEntity<EtaService.TokenEta> getTokenEta(@PathVariable String id) {
+        return ResponseEntity.ok(etaService.etaFor(id));
+    }
+
+    @GetMapping("/tokens")
+    public ResponseEntity<List<Token>> findTokens(@RequestParam(required = false) String patientName,
+                                                  @RequestParam(required = false) TokenStatus status) {
+        return ResponseEntity.ok(opdService.findTokens(patientName, status));
+    }
+
+    @GetMapping("/slots/{id}/tokens")
+    public ResponseEntity<List<Token>> getSlotTokens(@PathVariable String id) {
+        return ResponseEntity.ok(opdService.getSlotTokens(id));
+    }
+
     @GetMapping("/doctors/{doctorId}/slots")
-    public ResponseEntity<List<OpdSlot>> getDoctorSlots(@PathVariable String doctorId) {
-        return ResponseEntity.ok(opdService.getDoctorSlots(doctorId));
+    public ResponseEntity<byte[]> getDoctorSlots(@PathVariable String doctorId) {
+        SlotViewCache.SlotView view = slotViewCache.viewFor(doctorId);
+        return ResponseEntity.ok()
+                .eTag(view.etag())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(view.json());
+    }
+
+    @GetMapping("/doctors/{doctorId}/slots/{date}")
+    public ResponseEntity<List<OpdSlot>> getDoctorSlotsOn(@PathVariable String doctorId, @PathVariable String date) {
+        return ResponseEntity.ok(opdService.getDoctorSlots(doctorId, LocalDate.parse(date)));
+    }
+
+    @GetMapping(path = "/doctors/{doctorId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamDoctorSlots(@PathVariable String doctorId) {
+        return slotStreamService.subscribe(doctorId);
     }
 
     @PostMapping("/slots/{id}/delay")
@@ -65,6 +171,11 @@ public class OpdController {
         return ResponseEntity.ok().build();
     }
 
+    @PostMapping("/slots/{id}/capacity")
+    public ResponseEntity<List<TokenMove>> resizeSlot(@PathVariable String id, @RequestParam int capacity) {
+        return ResponseEntity.ok(opdService.resizeSlot(id, capacity));
+    }
+
     @PostMapping("/tokens/{id}/noshow")
     public ResponseEntity<Void> toggleNoShow(@PathVariable String id) {
         opdService.toggleNoShow(id);
@@ -72,9 +183,8 @@ public class OpdController {
     }
 
     @DeleteMapping("/slots/{id}")
-    public ResponseEntity<Void> deleteSlot(@PathVariable String id) {
-        opdService.deleteSlot(id);
-        return ResponseEntity.ok().build();
+    public ResponseEntity<List<TokenMove>> deleteSlot(@PathVariable String id) {
+        return ResponseEntity.ok(opdService.deleteSlot(id));
     }
 
     @Data
@@ -86,6 +196,15 @@ public class OpdController {
         private int capacity;
     }
 
+    @Data
+    public static class TemplateRequest {
+        private DayOfWeek dayOfWeek;
+        private String sessionStart;
+        private String sessionEnd;
+        private int slotMinutes;
+        private int capacity;
+    }
+
     @Data
     public static class BookingRequest {
         private String doctorId;
@@ -93,4 +212,12 @@ public class OpdController {
         private String patientName;
         private TokenSource source;
     }
+
+    @Data
+    public static class EarliestBookingRequest {
+        private String specialization;
+        private String date;
+        private String patientName;
+        private TokenSource source;
+    }
 }
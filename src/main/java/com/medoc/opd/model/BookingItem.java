@@ -0,0 +1,17 @@
+package com.medoc.opd.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BookingItem {
+    private String patientName;
+    private TokenSource source;
+    private String doctorId;
+    private LocalDate date;
+}
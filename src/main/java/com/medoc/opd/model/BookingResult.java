@@ -0,0 +1,23 @@
+package com.medoc.opd.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BookingResult {
+    private boolean allocated;
+    private Token token;
+    private String slotId;
+    private List<String> bumpedTokenIds = new ArrayList<>();
+    private String error;
+
+    public static BookingResult rejected(Token token, String error) {
+        return new BookingResult(false, token, null, new ArrayList<>(), error);
+    }
+}
@@ -0,0 +1,88 @@
+package com.medoc.opd.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+@Data
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_DEFAULT)
+public class OpdEvent {
+    private OpdEventType type;
+    private String doctorId;
+    private String slotId;
+    private String fromSlotId;
+
+    private String doctorName;
+    private String specialization;
+
+    private String tokenId;
+    private String patientName;
+    private TokenSource source;
+    private TokenStatus status;
+    private LocalDateTime createdAt;
+    private long globalOrder;
+
+    private LocalDate date;
+    private LocalTime startTime;
+    private LocalTime endTime;
+    private int maxCapacity;
+
+    private String templateId;
+    private DayOfWeek dayOfWeek;
+    private int slotMinutes;
+
+    public static OpdEvent forDoctor(Doctor doctor) {
+        OpdEvent event = new OpdEvent();
+        event.type = OpdEventType.DOCTOR_ONBOARDED;
+        event.doctorId = doctor.getId();
+        event.doctorName = doctor.getName();
+        event.specialization = doctor.getSpecialization();
+        return event;
+    }
+
+    public static OpdEvent forTemplate(ScheduleTemplate template) {
+        OpdEvent event = new OpdEvent();
+        event.type = OpdEventType.TEMPLATE_ADDED;
+        event.doctorId = template.getDoctorId();
+        event.templateId = template.getId();
+        event.dayOfWeek = template.getDayOfWeek();
+        event.startTime = template.getSessionStart();
+        event.endTime = template.getSessionEnd();
+        event.slotMinutes = template.getSlotMinutes();
+        event.maxCapacity = template.getCapacity();
+        return event;
+    }
+
+    public static OpdEvent forToken(OpdEventType type, String doctorId, Token token, String fromSlotId) {
+        OpdEvent event = new OpdEvent();
+        event.type = type;
+        event.doctorId = doctorId;
+        event.slotId = token.getAssignedSlotId();
+        event.fromSlotId = fromSlotId;
+        event.tokenId = token.getId();
+        event.patientName = token.getPatientName();
+        event.source = token.getSource();
+        event.status = token.getStatus();
+        event.createdAt = token.getCreatedAt();
+        event.globalOrder = token.getGlobalOrder();
+        return event;
+    }
+
+    public static OpdEvent forSlot(OpdEventType type, OpdSlot slot) {
+        OpdEvent event = new OpdEvent();
+        event.type = type;
+        event.doctorId = slot.getDoctorId();
+        event.slotId = slot.getId();
+        event.date = slot.getDate();
+        event.startTime = slot.getStartTime();
+        event.endTime = slot.getEndTime();
+        event.maxCapacity = slot.getMaxCapacity();
+        return event;
+    }
+}
@@ -0,0 +1,19 @@
+package com.medoc.opd.model;
+
+public enum OpdEventType {
+    DOCTOR_ONBOARDED,
+    TEMPLATE_ADDED,
+    SLOT_CREATED,
+    SLOT_DELAYED,
+    SLOT_RESIZED,
+    SLOT_DELETED,
+    SLOT_ARCHIVED,
+    TOKEN_ALLOCATED,
+    TOKEN_REJECTED,
+    TOKEN_BUMPED,
+    TOKEN_MOVED,
+    TOKEN_CANCELLED,
+    TOKEN_NO_SHOW,
+    TOKEN_RESTORED,
+    TOKEN_COMPLETED
+}
@@ -1,17 +1,17 @@
 package com.medoc.opd.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 import lombok.ToString;
 
 import java.time.LocalDate;
 
 import java.time.LocalTime;
-import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
-import java.util.UUID;
 
 @Data
-@ToString(exclude = "tokens")
+@ToString(exclude = "queue")
 public class OpdSlot {
     private String id;
     private String doctorId;
@@ -19,15 +19,41 @@ public class OpdSlot {
     private LocalTime startTime;
     private LocalTime endTime;
     private int maxCapacity;
-    private List<Token> tokens;
+    @JsonIgnore
+    private SlotQueue queue;
 
-    public OpdSlot(String doctorId, LocalDate date, LocalTime startTime, LocalTime endTime, int maxCapacity) {
-        this.id = UUID.randomUUID().toString();
+    public OpdSlot(String id, String doctorId, LocalDate date, LocalTime startTime, LocalTime endTime,
+                   int maxCapacity) {
+        this.id = id;
         this.doctorId = doctorId;
         this.date = date;
         this.startTime = startTime;
         this.endTime = endTime;
         this.maxCapacity = maxCapacity;
-        this.tokens = new ArrayList<>();
+        this.queue = new SlotQueue();
+    }
+
+    public List<Token> getTokens() {
+        return queue.toList();
+    }
+
+    @JsonIgnore
+    public int getCompletedCount() {
+        return queue.completedCount();
+    }
+
+    public OpdSlot snapshot() {
+        OpdSlot copy = new OpdSlot(id, doctorId, date, startTime, endTime, maxCapacity);
+        copy.setQueue(queue.copy());
+        return copy;
+    }
+
+    /**
+     * A copy for read views that also lists the given completed tokens, which the live queue only counts.
+     */
+    public OpdSlot snapshot(Collection<Token> completedTokens) {
+        OpdSlot copy = new OpdSlot(id, doctorId, date, startTime, endTime, maxCapacity);
+        copy.setQueue(queue.copyWith(completedTokens));
+        return copy;
     }
 }
@@ -0,0 +1,21 @@
+package com.medoc.opd.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ScheduleTemplate {
+    private String id;
+    private String doctorId;
+    private DayOfWeek dayOfWeek;
+    private LocalTime sessionStart;
+    private LocalTime sessionEnd;
+    private int slotMinutes;
+    private int capacity;
+}
@@ -0,0 +1,149 @@
+package com.medoc.opd.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+public class SlotQueue {
+    private final NavigableSet<Token> ordered;
+    private final NavigableSet<Token> active;
+    private final Map<String, Token> byId;
+    private int completed;
+
+    public SlotQueue() {
+        this.ordered = new TreeSet<>();
+        this.active = new TreeSet<>();
+        this.byId = new HashMap<>();
+    }
+
+    private SlotQueue(SlotQueue source) {
+        this.ordered = new TreeSet<>(source.ordered);
+        this.active = new TreeSet<>(source.active);
+        this.byId = new HashMap<>(source.byId);
+        this.completed = source.completed;
+    }
+
+    public void add(Token token) {
+        Token previous = byId.put(token.getId(), token);
+        if (previous != null) {
+            ordered.remove(previous);
+            active.remove(previous);
+            if (previous.getStatus() == TokenStatus.COMPLETED) {
+                completed--;
+            }
+        }
+        ordered.add(token);
+        if (token.getStatus() == TokenStatus.ACTIVE) {
+            active.add(token);
+        } else if (token.getStatus() == TokenStatus.COMPLETED) {
+            completed++;
+        }
+    }
+
+    public Token remove(String tokenId) {
+        Token token = byId.remove(tokenId);
+        if (token != null) {
+            ordered.remove(token);
+            active.remove(token);
+            if (token.getStatus() == TokenStatus.COMPLETED) {
+                completed--;
+            }
+        }
+        return token;
+    }
+
+    public void updateStatus(Token token, TokenStatus status) {
+        if (status == TokenStatus.COMPLETED) {
+            complete(token);
+            return;
+        }
+        if (byId.get(token.getId()) != token) {
+            token.setStatus(status);
+            return;
+        }
+        active.remove(token);
+        if (token.getStatus() == TokenStatus.COMPLETED) {
+            completed--;
+        }
+        token.setStatus(status);
+        if (status == TokenStatus.ACTIVE) {
+            active.add(token);
+        }
+    }
+
+    public void complete(Token token) {
+        if (byId.get(token.getId()) == token) {
+            remove(token.getId());
+            completed++;
+        }
+        token.setStatus(TokenStatus.COMPLETED);
+    }
+
+    public void recordCompleted() {
+        completed++;
+    }
+
+    public Token peekLowestActive() {
+        return active.isEmpty() ? null : active.last();
+    }
+
+    public Token peekHighestActive() {
+        return active.isEmpty() ? null : active.first();
+    }
+
+    public Token pollLowestActive() {
+        Token lowest = active.pollLast();
+        if (lowest != null) {
+            ordered.remove(lowest);
+            byId.remove(lowest.getId());
+        }
+        return lowest;
+    }
+
+    public Iterator<Token> activeFromLowest() {
+        return active.descendingIterator();
+    }
+
+    public boolean contains(String tokenId) {
+        return byId.containsKey(tokenId);
+    }
+
+    public int activeCount() {
+        return active.size();
+    }
+
+    public int completedCount() {
+        return completed;
+    }
+
+    public int occupiedCount() {
+        return active.size() + completed;
+    }
+
+    public int size() {
+        return ordered.size();
+    }
+
+    public List<Token> toList() {
+        return new ArrayList<>(ordered);
+    }
+
+    public SlotQueue copy() {
+        return new SlotQueue(this);
+    }
+
+    public SlotQueue copyWith(Collection<Token> completedTokens) {
+        SlotQueue copy = new SlotQueue(this);
+        for (Token token : completedTokens) {
+            if (copy.byId.putIfAbsent(token.getId(), token) == null) {
+                copy.ordered.add(token);
+            }
+        }
+        return copy;
+    }
+}
@@ -1,13 +1,21 @@
 package com.medoc.opd.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AccessLevel;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
+
 import java.time.LocalDateTime;
-import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Data
 @NoArgsConstructor
 public class Token implements Comparable<Token> {
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+    private static final int PRIORITY_SHIFT = 56;
+    private static final long ORDER_MASK = (1L << PRIORITY_SHIFT) - 1;
+
     private String id;
     private String patientName;
     private TokenSource source;
@@ -15,21 +23,45 @@ public class Token implements Comparable<Token> {
     private String assignedSlotId;
     private LocalDateTime createdAt;
     private long globalOrder;
+    @JsonIgnore
+    @Setter(AccessLevel.NONE)
+    private long sortKey;
 
-    public Token(String patientName, TokenSource source) {
-        this.id = UUID.randomUUID().toString();
+    public Token(String id, String patientName, TokenSource source) {
+        this.id = id;
         this.patientName = patientName;
         this.source = source;
         this.status = TokenStatus.ACTIVE;
         this.createdAt = LocalDateTime.now();
+        this.globalOrder = SEQUENCE.incrementAndGet();
+        this.sortKey = packSortKey(source, globalOrder);
+    }
+
+    public static void advanceSequence(long seenOrder) {
+        SEQUENCE.accumulateAndGet(seenOrder, Math::max);
+    }
+
+    public void setSource(TokenSource source) {
+        this.source = source;
+        this.sortKey = packSortKey(source, globalOrder);
+    }
+
+    public void setGlobalOrder(long globalOrder) {
+        this.globalOrder = globalOrder;
+        this.sortKey = packSortKey(source, globalOrder);
+    }
+
+    private static long packSortKey(TokenSource source, long order) {
+        long priority = source == null ? 0xFF : source.getPriorityLevel();
+        return (priority << PRIORITY_SHIFT) | (order & ORDER_MASK);
     }
 
     @Override
     public int compareTo(Token other) {
-        int priorityComparison = Integer.compare(this.source.getPriorityLevel(), other.source.getPriorityLevel());
-        if (priorityComparison != 0) {
-            return priorityComparison;
+        int keyComparison = Long.compare(this.sortKey, other.sortKey);
+        if (keyComparison != 0) {
+            return keyComparison;
         }
-        return this.createdAt.compareTo(other.createdAt);
+        return this.id.compareTo(other.id);
     }
 }
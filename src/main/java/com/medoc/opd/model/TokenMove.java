@@ -0,0 +1,14 @@
+package com.medoc.opd.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TokenMove {
+    private String tokenId;
+    private String fromSlotId;
+    private String toSlotId;
+}
@@ -0,0 +1,284 @@
+package com.medoc.opd.persistence;
+
+import com.medoc.opd.model.Doctor;
+import com.medoc.opd.model.OpdEvent;
+import com.medoc.opd.model.OpdEventType;
+import com.medoc.opd.model.OpdSlot;
+import com.medoc.opd.model.Token;
+import com.medoc.opd.model.TokenStatus;
+import com.medoc.opd.repository.DoctorRepository;
+import com.medoc.opd.repository.SlotRepository;
+import com.medoc.opd.repository.TokenRepository;
+import com.medoc.opd.service.EngineShards;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+@Component
+@ConditionalOnProperty(name = "opd.archive.enabled", havingValue = "true")
+@Slf4j
+public class DayArchive {
+    private static final String DAY_PREFIX = "day-";
+    private static final String DAY_SUFFIX = ".gz";
+
+    private final DoctorRepository doctorRepository;
+    private final SlotRepository slotRepository;
+    private final TokenRepository tokenRepository;
+    private final EngineShards engineShards;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectProvider<EngineJournal> engineJournal;
+    private final Path directory;
+    private final int retainDays;
+    private final Map<LocalDate, Map<String, List<OpdSlot>>> cache;
+
+    public DayArchive(DoctorRepository doctorRepository, SlotRepository slotRepository,
+                      TokenRepository tokenRepository, EngineShards engineShards,
+                      ApplicationEventPublisher eventPublisher, ObjectProvider<EngineJournal> engineJournal,
+                      @Value("${opd.archive.dir:data/archive}") String directory,
+                      @Value("${opd.archive.retain-days:0}") int retainDays,
+                      @Value("${opd.archive.cache-days:7}") int cacheDays) {
+        this.doctorRepository = doctorRepository;
+        this.slotRepository = slotRepository;
+        this.tokenRepository = tokenRepository;
+        this.engineShards = engineShards;
+        this.eventPublisher = eventPublisher;
+        this.engineJournal = engineJournal;
+        this.directory = Path.of(directory);
+        this.retainDays = retainDays;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<LocalDate, Map<String, List<OpdSlot>>> eldest) {
+                return size() > cacheDays;
+            }
+        };
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void closeMissedDays() {
+        closeFinishedDays();
+    }
+
+    @Scheduled(cron = "${opd.archive.close-cron:0 5 0 * * *}")
+    public void closeFinishedDays() {
+        try {
+            closeDaysBefore(LocalDate.now().minusDays(retainDays));
+        } catch (IOException e) {
+            log.error("Day close failed", e);
+        }
+    }
+
+    /**
+     * Closes every day before {@code cutoff} in three steps so that no disk IO happens under the engine-wide lock:
+     * each day is serialised in memory under the locks, written out with no lock held, and evicted only after the
+     * locks are retaken and the day serialises to the same bytes. A day that changed in between stays live and is
+     * archived again on the next close; re-appended records supersede the earlier ones when the day is read back.
+     */
+    public int closeDaysBefore(LocalDate cutoff) throws IOException {
+        Files.createDirectories(directory);
+        Map<LocalDate, byte[]> images;
+        engineShards.lockAll();
+        try {
+            markUnseenAsNoShow(cutoff);
+            images = serialise(collect(cutoff));
+        } finally {
+            engineShards.unlockAll();
+        }
+        if (images.isEmpty()) {
+            return 0;
+        }
+
+        for (Map.Entry<LocalDate, byte[]> day : images.entrySet()) {
+            writeDay(day.getKey(), day.getValue());
+        }
+
+        int slotCount = 0;
+        List<String> evictedTokenIds = new ArrayList<>();
+        List<LocalDate> closed = new ArrayList<>();
+        engineShards.lockAll();
+        try {
+            Map<LocalDate, ClosedDay> current = collect(cutoff);
+            Map<LocalDate, byte[]> currentImages = serialise(current);
+            for (Map.Entry<LocalDate, byte[]> day : images.entrySet()) {
+                if (!Arrays.equals(day.getValue(), currentImages.get(day.getKey()))) {
+                    log.warn("Day {} changed while it was being archived; keeping it live until the next close",
+                            day.getKey());
+                    continue;
+                }
+                ClosedDay closedDay = current.get(day.getKey());
+                for (OpdSlot slot : closedDay.slots()) {
+                    slotRepository.deleteById(slot.getId());
+                    eventPublisher.publishEvent(OpdEvent.forSlot(OpdEventType.SLOT_ARCHIVED, slot));
+                }
+                closedDay.tokens().forEach(token -> evictedTokenIds.add(token.getId()));
+                slotCount += closedDay.slots().size();
+                closed.add(day.getKey());
+            }
+            tokenRepository.deleteAll(evictedTokenIds);
+            EngineJournal journal = engineJournal.getIfAvailable();
+            if (journal != null) {
+                journal.recordEvictedTokens(evictedTokenIds);
+            }
+        } finally {
+            engineShards.unlockAll();
+        }
+
+        log.info("Closed {} day(s) before {}: archived {} slots and {} tokens",
+                closed.size(), cutoff, slotCount, evictedTokenIds.size());
+        EngineJournal journal = engineJournal.getIfAvailable();
+        if (journal != null) {
+            journal.snapshot();
+        }
+        return closed.size();
+    }
+
+    public List<OpdSlot> findDoctorSlots(String doctorId, LocalDate date) {
+        Map<String, List<OpdSlot>> day;
+        synchronized (cache) {
+            day = cache.get(date);
+        }
+        if (day == null) {
+            day = loadDay(date);
+            synchronized (cache) {
+                cache.put(date, day);
+            }
+        }
+        return day.getOrDefault(doctorId, List.of()).stream()
+                .map(OpdSlot::snapshot)
+                .toList();
+    }
+
+    /**
+     * Patients still ACTIVE when their day closes were never seen: they are archived as NO_SHOW, through the same
+     * event a manual no-show publishes, rather than being passed off as consultations.
+     */
+    private void markUnseenAsNoShow(LocalDate cutoff) {
+        for (Doctor doctor : doctorRepository.findAll()) {
+            for (OpdSlot slot : slotRepository.findByDoctorBefore(doctor.getId(), cutoff)) {
+                for (Token token : slot.getQueue().toList()) {
+                    if (token.getStatus() == TokenStatus.ACTIVE) {
+                        slot.getQueue().updateStatus(token, TokenStatus.NO_SHOW);
+                        eventPublisher.publishEvent(
+                                OpdEvent.forToken(OpdEventType.TOKEN_NO_SHOW, slot.getDoctorId(), token, null));
+                    }
+                }
+            }
+        }
+    }
+
+    private Map<LocalDate, ClosedDay> collect(LocalDate cutoff) {
+        Map<LocalDate, ClosedDay> days = new TreeMap<>();
+        List<Doctor> doctors = doctorRepository.findAll();
+        doctors.sort(Comparator.comparing(Doctor::getId));
+        Map<String, LocalDate> archivedSlotDates = new HashMap<>();
+        for (Doctor doctor : doctors) {
+            for (OpdSlot slot : slotRepository.findByDoctorBefore(doctor.getId(), cutoff)) {
+                ClosedDay day = days.computeIfAbsent(slot.getDate(), ClosedDay::new);
+                day.slots().add(slot);
+                day.tokens().addAll(slot.getQueue().toList());
+                archivedSlotDates.put(slot.getId(), slot.getDate());
+            }
+        }
+        for (Token token : tokenRepository.findFinishedInSlots(archivedSlotDates.keySet())) {
+            days.get(archivedSlotDates.get(token.getAssignedSlotId())).tokens().add(token);
+        }
+        for (Token token : tokenRepository.findUnassignedFinishedBefore(cutoff.atStartOfDay())) {
+            days.computeIfAbsent(token.getCreatedAt().toLocalDate(), ClosedDay::new).tokens().add(token);
+        }
+        days.values().forEach(day -> day.tokens().sort(Comparator.comparing(Token::getId)));
+        return days;
+    }
+
+    private static Map<LocalDate, byte[]> serialise(Map<LocalDate, ClosedDay> days) throws IOException {
+        Map<LocalDate, byte[]> images = new TreeMap<>();
+        for (ClosedDay day : days.values()) {
+            ByteArrayOutputStream image = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(image);
+            for (OpdSlot slot : day.slots()) {
+                StateCodec.writeSlot(out, slot);
+            }
+            for (Token token : day.tokens()) {
+                StateCodec.writeToken(out, token);
+            }
+            out.flush();
+            images.put(day.date(), image.toByteArray());
+        }
+        return images;
+    }
+
+    private void writeDay(LocalDate date, byte[] image) throws IOException {
+        Path file = directory.resolve(DAY_PREFIX + date + DAY_SUFFIX);
+        try (GZIPOutputStream out = new GZIPOutputStream(
+                Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND))) {
+            out.write(image);
+        }
+        synchronized (cache) {
+            cache.remove(date);
+        }
+    }
+
+    private Map<String, List<OpdSlot>> loadDay(LocalDate date) {
+        Path file = directory.resolve(DAY_PREFIX + date + DAY_SUFFIX);
+        if (!Files.exists(file)) {
+            return Map.of();
+        }
+        EngineState state = new EngineState();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(file))))) {
+            while (true) {
+                try {
+                    StateCodec.read(in, state);
+                } catch (EOFException e) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read archived day " + date, e);
+        }
+
+        for (Token token : state.getTokens().values()) {
+            OpdSlot slot = token.getAssignedSlotId() == null ? null : state.getSlots().get(token.getAssignedSlotId());
+            if (slot != null) {
+                slot.getQueue().add(token);
+            }
+        }
+        Map<String, List<OpdSlot>> byDoctor = new LinkedHashMap<>();
+        state.getSlots().values().stream()
+                .sorted(Comparator.comparing(OpdSlot::getStartTime))
+                .forEach(slot -> byDoctor.computeIfAbsent(slot.getDoctorId(), k -> new ArrayList<>()).add(slot));
+        return byDoctor;
+    }
+
+    private record ClosedDay(LocalDate date, List<OpdSlot> slots, List<Token> tokens) {
+        private ClosedDay(LocalDate date) {
+            this(date, new ArrayList<>(), new ArrayList<>());
+        }
+    }
+}
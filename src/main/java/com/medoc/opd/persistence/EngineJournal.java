@@ -0,0 +1,452 @@
+package com.medoc.opd.persistence;
+
+import com.medoc.opd.model.Doctor;
+import com.medoc.opd.model.OpdEvent;
+import com.medoc.opd.model.OpdSlot;
+import com.medoc.opd.model.ScheduleTemplate;
+import com.medoc.opd.model.Token;
+import com.medoc.opd.repository.DoctorRepository;
+import com.medoc.opd.repository.ScheduleTemplateRepository;
+import com.medoc.opd.repository.SlotRepository;
+import com.medoc.opd.repository.TokenRepository;
+import com.medoc.opd.service.CommitBarrier;
+import com.medoc.opd.service.EngineShards;
+import com.medoc.opd.service.IdGenerator;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Write-ahead journal of engine events over memory-mapped segments, with periodic snapshots.
+ * <p>
+ * Appends happen under the publishing shard lock and only copy bytes; a single flusher thread forces the segment
+ * as soon as anything is pending and completes the batch every record since its previous force belongs to, so
+ * concurrent mutations share one force (group commit). Publishers wait for their batch through the
+ * {@link CommitBarrier} after releasing the shard lock. If a record cannot be appended or forced the engine
+ * switches to read-only instead of failing the publishing thread half-way through its listeners.
+ */
+@Component
+@ConditionalOnProperty(name = "opd.persistence.enabled", havingValue = "true")
+@Slf4j
+public class EngineJournal {
+    private static final String JOURNAL_PREFIX = "journal-";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final int SNAPSHOT_MAGIC = 0x4F504453;
+
+    private final DoctorRepository doctorRepository;
+    private final SlotRepository slotRepository;
+    private final TokenRepository tokenRepository;
+    private final ScheduleTemplateRepository templateRepository;
+    private final EngineShards engineShards;
+    private final IdGenerator idGenerator;
+    private final CommitBarrier commitBarrier;
+    private final Path directory;
+    private final int segmentSize;
+    private final long snapshotIntervalMillis;
+
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final ReentrantLock snapshotLock = new ReentrantLock();
+    private final Condition flushNeeded = appendLock.newCondition();
+    private final ByteArrayOutputStream scratch = new ByteArrayOutputStream(256);
+    private final DataOutputStream scratchOut = new DataOutputStream(scratch);
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "opd-journal");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Thread flusher = new Thread(this::flushLoop, "opd-journal-flusher");
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private long segmentSequence;
+    private boolean dirty;
+    private CompletableFuture<Void> batch = new CompletableFuture<>();
+
+    public EngineJournal(DoctorRepository doctorRepository, SlotRepository slotRepository,
+                         TokenRepository tokenRepository, ScheduleTemplateRepository templateRepository,
+                         EngineShards engineShards, IdGenerator idGenerator, CommitBarrier commitBarrier,
+                         @Value("${opd.persistence.dir:data}") String directory,
+                         @Value("${opd.persistence.segment-size:67108864}") int segmentSize,
+                         @Value("${opd.persistence.snapshot-interval-ms:300000}") long snapshotIntervalMillis) {
+        this.doctorRepository = doctorRepository;
+        this.slotRepository = slotRepository;
+        this.tokenRepository = tokenRepository;
+        this.templateRepository = templateRepository;
+        this.engineShards = engineShards;
+        this.idGenerator = idGenerator;
+        this.commitBarrier = commitBarrier;
+        this.directory = Path.of(directory);
+        this.segmentSize = segmentSize;
+        this.snapshotIntervalMillis = snapshotIntervalMillis;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        Files.createDirectories(directory);
+        long nextSegment = recover();
+        openSegment(nextSegment);
+        snapshot();
+        flusher.setDaemon(true);
+        flusher.start();
+        scheduler.scheduleWithFixedDelay(this::snapshotQuietly, snapshotIntervalMillis, snapshotIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @EventListener
+    public void onEvent(OpdEvent event) {
+        appendLock.lock();
+        try {
+            if (rejectWhenReadOnly()) {
+                return;
+            }
+            scratch.reset();
+            StateCodec.writeEvent(scratchOut, event);
+            append(scratch.toByteArray());
+            enlist();
+        } catch (IOException e) {
+            failOver("event " + event.getType(), e);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Tokens leave memory without an event of their own when their day is archived; without these records a replay
+     * of the journal tail would bring them back as live tokens.
+     */
+    public void recordEvictedTokens(Collection<String> tokenIds) {
+        appendLock.lock();
+        try {
+            if (rejectWhenReadOnly()) {
+                return;
+            }
+            for (String tokenId : tokenIds) {
+                scratch.reset();
+                StateCodec.writeTokenDeleted(scratchOut, tokenId);
+                append(scratch.toByteArray());
+            }
+            enlist();
+        } catch (IOException e) {
+            failOver("evicted tokens", e);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    public void snapshot() throws IOException {
+        snapshotLock.lock();
+        try {
+            long snapshotSequence;
+            appendLock.lock();
+            try {
+                rollSegment();
+                snapshotSequence = segmentSequence;
+            } finally {
+                appendLock.unlock();
+            }
+            byte[] image = writeImage();
+
+            Path target = directory.resolve(SNAPSHOT_PREFIX + snapshotSequence + ".bin");
+            Path temp = directory.resolve(target.getFileName() + ".tmp");
+            Files.write(temp, image);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            deleteOlderThan(snapshotSequence);
+            log.info("Snapshot {} written ({} bytes)", target.getFileName(), image.length);
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+        flusher.interrupt();
+        appendLock.lock();
+        try {
+            if (buffer != null) {
+                buffer.force();
+                channel.close();
+            }
+            batch.complete(null);
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("Could not close journal segment", e);
+            batch.completeExceptionally(e);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private long recover() throws IOException {
+        EngineState state = new EngineState();
+        long snapshotSequence = latestSequence(SNAPSHOT_PREFIX, ".bin");
+        if (snapshotSequence >= 0) {
+            Path snapshotFile = directory.resolve(SNAPSHOT_PREFIX + snapshotSequence + ".bin");
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile)))) {
+                if (in.readInt() != SNAPSHOT_MAGIC) {
+                    throw new IOException("Corrupt snapshot " + snapshotFile);
+                }
+                long records = in.readLong();
+                for (long i = 0; i < records; i++) {
+                    StateCodec.read(in, state);
+                }
+            }
+        }
+
+        long lastSegment = Math.max(snapshotSequence, 0);
+        long replayed = 0;
+        for (long sequence : segmentsFrom(Math.max(snapshotSequence, 0))) {
+            replayed += replaySegment(directory.resolve(JOURNAL_PREFIX + sequence + ".log"), state);
+            lastSegment = sequence;
+        }
+
+        state.loadInto(doctorRepository, slotRepository, tokenRepository, templateRepository);
+        Stream.of(state.getDoctors(), state.getSlots(), state.getTokens(), state.getTemplates())
+                .flatMap(entities -> entities.keySet().stream())
+                .forEach(idGenerator::advancePastKey);
+        log.info("Recovered {} doctors, {} slots, {} tokens ({} journal records replayed)",
+                state.getDoctors().size(), state.getSlots().size(), state.getTokens().size(), replayed);
+        return lastSegment + 1;
+    }
+
+    private long replaySegment(Path segment, EngineState state) throws IOException {
+        long records = 0;
+        try (FileChannel in = FileChannel.open(segment, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+            while (mapped.remaining() >= Integer.BYTES) {
+                int length = mapped.getInt();
+                if (length <= 0 || length > mapped.remaining()) {
+                    break;
+                }
+                byte[] record = new byte[length];
+                mapped.get(record);
+                StateCodec.read(new DataInputStream(new ByteArrayInputStream(record)), state);
+                records++;
+            }
+        }
+        return records;
+    }
+
+    private void append(byte[] record) throws IOException {
+        if (record.length + 2 * Integer.BYTES > segmentSize) {
+            throw new IOException("Record of " + record.length + " bytes does not fit a journal segment");
+        }
+        if (buffer.remaining() < record.length + 2 * Integer.BYTES) {
+            rollSegment();
+        }
+        int lengthPosition = buffer.position();
+        buffer.position(lengthPosition + Integer.BYTES);
+        buffer.put(record);
+        buffer.putInt(lengthPosition, record.length);
+    }
+
+    private void rollSegment() throws IOException {
+        flushLock.lock();
+        try {
+            buffer.force();
+            channel.close();
+        } finally {
+            flushLock.unlock();
+        }
+        openSegment(segmentSequence + 1);
+    }
+
+    private void openSegment(long sequence) throws IOException {
+        segmentSequence = sequence;
+        channel = FileChannel.open(directory.resolve(JOURNAL_PREFIX + sequence + ".log"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+    }
+
+    private void enlist() {
+        dirty = true;
+        commitBarrier.register(batch);
+        flushNeeded.signal();
+    }
+
+    private boolean rejectWhenReadOnly() {
+        if (!commitBarrier.isReadOnly()) {
+            return false;
+        }
+        commitBarrier.register(CompletableFuture.failedFuture(new IOException("Journal is read-only")));
+        return true;
+    }
+
+    private void failOver(String what, Exception e) {
+        log.error("Could not journal {}; switching the engine to read-only", what, e);
+        commitBarrier.markReadOnly();
+        commitBarrier.register(CompletableFuture.failedFuture(e));
+    }
+
+    /**
+     * Forces whatever has been appended since the previous force and completes that batch. Records appended
+     * while a force is running join the next batch; segments rolled in between were forced by the roll.
+     */
+    private void flushLoop() {
+        while (true) {
+            MappedByteBuffer current;
+            CompletableFuture<Void> committing;
+            appendLock.lock();
+            try {
+                while (!dirty) {
+                    flushNeeded.await();
+                }
+                dirty = false;
+                current = buffer;
+                committing = batch;
+                batch = new CompletableFuture<>();
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                appendLock.unlock();
+            }
+            flushLock.lock();
+            try {
+                current.force();
+                committing.complete(null);
+            } catch (UncheckedIOException e) {
+                log.error("Could not force the journal; switching the engine to read-only", e);
+                commitBarrier.markReadOnly();
+                committing.completeExceptionally(e);
+            } finally {
+                flushLock.unlock();
+            }
+        }
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (IOException e) {
+            log.error("Periodic snapshot failed", e);
+        }
+    }
+
+    /**
+     * Builds the image without stopping the engine: each shard is locked only while its own slots are copied,
+     * and tokens are read from the repositories as they stand. Anything that changes after the segment roll
+     * is also in the new segment, whose records are whole-state upserts, so replay settles any token read
+     * mid-update to the state the engine actually reached.
+     */
+    private byte[] writeImage() throws IOException {
+        List<List<OpdSlot>> slotsByShard = new ArrayList<>();
+        int slotCount = 0;
+        for (int i = 0; i < engineShards.shardCount(); i++) {
+            slotsByShard.add(new ArrayList<>());
+        }
+        for (OpdSlot slot : slotRepository.findAll()) {
+            slotsByShard.get(engineShards.shardOf(slot.getDoctorId())).add(slot);
+            slotCount++;
+        }
+        ByteArrayOutputStream slotImage = new ByteArrayOutputStream();
+        DataOutputStream slotOut = new DataOutputStream(slotImage);
+        for (int shard = 0; shard < slotsByShard.size(); shard++) {
+            Lock lock = engineShards.lock(shard);
+            lock.lock();
+            try {
+                for (OpdSlot slot : slotsByShard.get(shard)) {
+                    StateCodec.writeSlot(slotOut, slot);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        List<Doctor> doctors = doctorRepository.findAll();
+        List<ScheduleTemplate> templates = templateRepository.findAll();
+        List<Token> tokens = tokenRepository.findAll();
+        ByteArrayOutputStream image = new ByteArrayOutputStream(slotImage.size() + 64 * tokens.size());
+        DataOutputStream out = new DataOutputStream(image);
+        out.writeInt(SNAPSHOT_MAGIC);
+        out.writeLong((long) doctors.size() + templates.size() + slotCount + tokens.size());
+        for (Doctor doctor : doctors) {
+            StateCodec.writeDoctor(out, doctor);
+        }
+        for (ScheduleTemplate template : templates) {
+            StateCodec.writeTemplate(out, template);
+        }
+        slotOut.flush();
+        slotImage.writeTo(out);
+        for (Token token : tokens) {
+            StateCodec.writeToken(out, token);
+        }
+        out.flush();
+        return image.toByteArray();
+    }
+
+    private void deleteOlderThan(long sequence) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                long fileSequence = sequenceOf(file);
+                if (fileSequence >= 0 && fileSequence < sequence) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    private long latestSequence(String prefix, String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(p -> p.getFileName().toString())
+                    .filter(name -> name.startsWith(prefix) && name.endsWith(suffix))
+                    .mapToLong(name -> Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())))
+                    .max()
+                    .orElse(-1);
+        }
+    }
+
+    private List<Long> segmentsFrom(long sequence) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(p -> p.getFileName().toString())
+                    .filter(name -> name.startsWith(JOURNAL_PREFIX) && name.endsWith(".log"))
+                    .map(name -> Long.parseLong(name.substring(JOURNAL_PREFIX.length(), name.length() - 4)))
+                    .filter(s -> s >= sequence)
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static long sequenceOf(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            if (name.startsWith(JOURNAL_PREFIX) && name.endsWith(".log")) {
+                return Long.parseLong(name.substring(JOURNAL_PREFIX.length(), name.length() - 4));
+            }
+            if (name.startsWith(SNAPSHOT_PREFIX) && name.endsWith(".bin")) {
+                return Long.parseLong(name.substring(SNAPSHOT_PREFIX.length(), name.length() - 4));
+            }
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+        return -1;
+    }
+}
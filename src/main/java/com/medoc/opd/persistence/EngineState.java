@@ -0,0 +1,82 @@
+package com.medoc.opd.persistence;
+
+import com.medoc.opd.model.Doctor;
+import com.medoc.opd.model.OpdSlot;
+import com.medoc.opd.model.ScheduleTemplate;
+import com.medoc.opd.model.Token;
+import com.medoc.opd.model.TokenStatus;
+import com.medoc.opd.repository.DoctorRepository;
+import com.medoc.opd.repository.ScheduleTemplateRepository;
+import com.medoc.opd.repository.SlotRepository;
+import com.medoc.opd.repository.TokenRepository;
+import lombok.Getter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Getter
+class EngineState {
+    private final Map<String, Doctor> doctors = new LinkedHashMap<>();
+    private final Map<String, OpdSlot> slots = new LinkedHashMap<>();
+    private final Map<String, Token> tokens = new LinkedHashMap<>();
+    private final Map<String, ScheduleTemplate> templates = new LinkedHashMap<>();
+
+    void putDoctor(Doctor doctor) {
+        doctors.put(doctor.getId(), doctor);
+    }
+
+    void putTemplate(ScheduleTemplate template) {
+        templates.put(template.getId(), template);
+    }
+
+    void putSlot(OpdSlot slot) {
+        slots.merge(slot.getId(), slot, (existing, updated) -> {
+            existing.setStartTime(updated.getStartTime());
+            existing.setEndTime(updated.getEndTime());
+            existing.setMaxCapacity(updated.getMaxCapacity());
+            return existing;
+        });
+    }
+
+    void removeSlot(String slotId) {
+        slots.remove(slotId);
+    }
+
+    void putToken(Token token) {
+        tokens.put(token.getId(), token);
+        Token.advanceSequence(token.getGlobalOrder());
+    }
+
+    void removeToken(String tokenId) {
+        tokens.remove(tokenId);
+    }
+
+    void linkTokensToSlots() {
+        for (Token token : tokens.values()) {
+            if (token.getAssignedSlotId() == null) {
+                continue;
+            }
+            if (token.getStatus() == TokenStatus.CANCELLED) {
+                continue;
+            }
+            OpdSlot slot = slots.get(token.getAssignedSlotId());
+            if (slot == null) {
+                continue;
+            }
+            if (token.getStatus() == TokenStatus.COMPLETED) {
+                slot.getQueue().recordCompleted();
+            } else {
+                slot.getQueue().add(token);
+            }
+        }
+    }
+
+    void loadInto(DoctorRepository doctorRepository, SlotRepository slotRepository, TokenRepository tokenRepository,
+                  ScheduleTemplateRepository templateRepository) {
+        linkTokensToSlots();
+        doctors.values().forEach(doctorRepository::save);
+        templates.values().forEach(templateRepository::save);
+        slots.values().forEach(slotRepository::save);
+        tokens.values().forEach(tokenRepository::save);
+    }
+}
@@ -0,0 +1,174 @@
+package com.medoc.opd.persistence;
+
+import com.medoc.opd.model.Doctor;
+import com.medoc.opd.model.OpdEvent;
+import com.medoc.opd.model.OpdSlot;
+import com.medoc.opd.model.ScheduleTemplate;
+import com.medoc.opd.model.Token;
+import com.medoc.opd.model.TokenSource;
+import com.medoc.opd.model.TokenStatus;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+
+final class StateCodec {
+    static final byte DOCTOR = 1;
+    static final byte SLOT = 2;
+    static final byte SLOT_DELETED = 3;
+    static final byte TOKEN = 4;
+    static final byte TEMPLATE = 5;
+    static final byte TOKEN_DELETED = 6;
+
+    private static final TokenSource[] SOURCES = TokenSource.values();
+    private static final TokenStatus[] STATUSES = TokenStatus.values();
+
+    private StateCodec() {
+    }
+
+    static void writeDoctor(DataOutput out, Doctor doctor) throws IOException {
+        out.writeByte(DOCTOR);
+        writeString(out, doctor.getId());
+        writeString(out, doctor.getName());
+        writeString(out, doctor.getSpecialization());
+    }
+
+    static void writeTemplate(DataOutput out, ScheduleTemplate template) throws IOException {
+        writeTemplateFields(out, template.getId(), template.getDoctorId(), template.getDayOfWeek(),
+                template.getSessionStart(), template.getSessionEnd(), template.getSlotMinutes(),
+                template.getCapacity());
+    }
+
+    static void writeSlot(DataOutput out, OpdSlot slot) throws IOException {
+        writeSlotFields(out, slot.getId(), slot.getDoctorId(), slot.getDate(), slot.getStartTime(),
+                slot.getEndTime(), slot.getMaxCapacity());
+    }
+
+    static void writeToken(DataOutput out, Token token) throws IOException {
+        writeTokenFields(out, token.getId(), token.getPatientName(), token.getSource(), token.getStatus(),
+                token.getAssignedSlotId(), token.getCreatedAt(), token.getGlobalOrder());
+    }
+
+    static void writeTokenDeleted(DataOutput out, String tokenId) throws IOException {
+        out.writeByte(TOKEN_DELETED);
+        writeString(out, tokenId);
+    }
+
+    static void writeEvent(DataOutput out, OpdEvent event) throws IOException {
+        switch (event.getType()) {
+            case DOCTOR_ONBOARDED -> writeDoctor(out,
+                    new Doctor(event.getDoctorId(), event.getDoctorName(), event.getSpecialization()));
+            case TEMPLATE_ADDED -> writeTemplateFields(out, event.getTemplateId(), event.getDoctorId(),
+                    event.getDayOfWeek(), event.getStartTime(), event.getEndTime(), event.getSlotMinutes(),
+                    event.getMaxCapacity());
+            case SLOT_CREATED, SLOT_DELAYED, SLOT_RESIZED -> writeSlotFields(out, event.getSlotId(),
+                    event.getDoctorId(), event.getDate(), event.getStartTime(), event.getEndTime(),
+                    event.getMaxCapacity());
+            case SLOT_DELETED, SLOT_ARCHIVED -> {
+                out.writeByte(SLOT_DELETED);
+                writeString(out, event.getSlotId());
+            }
+            default -> writeTokenFields(out, event.getTokenId(), event.getPatientName(), event.getSource(),
+                    event.getStatus(), event.getSlotId(), event.getCreatedAt(), event.getGlobalOrder());
+        }
+    }
+
+    static void read(DataInput in, EngineState state) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case DOCTOR -> state.putDoctor(new Doctor(readString(in), readString(in), readString(in)));
+            case SLOT -> {
+                String id = readString(in);
+                String doctorId = readString(in);
+                LocalDate date = LocalDate.ofEpochDay(in.readLong());
+                LocalTime start = LocalTime.ofNanoOfDay(in.readLong());
+                LocalTime end = LocalTime.ofNanoOfDay(in.readLong());
+                OpdSlot slot = new OpdSlot(id, doctorId, date, start, end, in.readInt());
+                state.putSlot(slot);
+            }
+            case SLOT_DELETED -> state.removeSlot(readString(in));
+            case TOKEN_DELETED -> state.removeToken(readString(in));
+            case TEMPLATE -> {
+                String id = readString(in);
+                String doctorId = readString(in);
+                DayOfWeek dayOfWeek = DayOfWeek.of(in.readByte());
+                LocalTime start = LocalTime.ofNanoOfDay(in.readLong());
+                LocalTime end = LocalTime.ofNanoOfDay(in.readLong());
+                state.putTemplate(new ScheduleTemplate(id, doctorId, dayOfWeek, start, end, in.readInt(), in.readInt()));
+            }
+            case TOKEN -> {
+                Token token = new Token();
+                token.setId(readString(in));
+                token.setPatientName(readString(in));
+                byte source = in.readByte();
+                token.setSource(source < 0 ? null : SOURCES[source]);
+                byte status = in.readByte();
+                token.setStatus(status < 0 ? null : STATUSES[status]);
+                token.setAssignedSlotId(readString(in));
+                if (in.readBoolean()) {
+                    token.setCreatedAt(LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC));
+                }
+                token.setGlobalOrder(in.readLong());
+                state.putToken(token);
+            }
+            default -> throw new IOException("Unknown record tag " + tag);
+        }
+    }
+
+    private static void writeSlotFields(DataOutput out, String id, String doctorId, LocalDate date,
+                                        LocalTime start, LocalTime end, int capacity) throws IOException {
+        out.writeByte(SLOT);
+        writeString(out, id);
+        writeString(out, doctorId);
+        out.writeLong(date.toEpochDay());
+        out.writeLong(start.toNanoOfDay());
+        out.writeLong(end.toNanoOfDay());
+        out.writeInt(capacity);
+    }
+
+    private static void writeTemplateFields(DataOutput out, String id, String doctorId, DayOfWeek dayOfWeek,
+                                            LocalTime start, LocalTime end, int slotMinutes, int capacity)
+            throws IOException {
+        out.writeByte(TEMPLATE);
+        writeString(out, id);
+        writeString(out, doctorId);
+        out.writeByte(dayOfWeek.getValue());
+        out.writeLong(start.toNanoOfDay());
+        out.writeLong(end.toNanoOfDay());
+        out.writeInt(slotMinutes);
+        out.writeInt(capacity);
+    }
+
+    private static void writeTokenFields(DataOutput out, String id, String patientName, TokenSource source,
+                                         TokenStatus status, String slotId, LocalDateTime createdAt,
+                                         long globalOrder) throws IOException {
+        out.writeByte(TOKEN);
+        writeString(out, id);
+        writeString(out, patientName);
+        out.writeByte(source == null ? -1 : source.ordinal());
+        out.writeByte(status == null ? -1 : status.ordinal());
+        writeString(out, slotId);
+        out.writeBoolean(createdAt != null);
+        if (createdAt != null) {
+            out.writeLong(createdAt.toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(createdAt.getNano());
+        }
+        out.writeLong(globalOrder);
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
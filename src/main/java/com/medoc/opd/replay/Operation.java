@@ -0,0 +1,80 @@
+package com.medoc.opd.replay;
+
+import com.medoc.opd.model.TokenSource;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+
+/**
+ * One recorded engine operation, captured while the engine holds the doctor's shard lock so the stream is in the
+ * order operations were applied. Doctors and tokens are referenced by the order in which they were first seen,
+ * slots by their position within the doctor's day, so a stream replays against an engine that assigns fresh ids.
+ * An earliest booking also carries the doctor it landed on, so replay does not depend on racing index reads.
+ */
+public record Operation(Type type, long offsetMicros, int doctor, int slot, int token, String name, String detail,
+                        TokenSource source, LocalDate date, LocalTime start, LocalTime end, int capacity,
+                        int minutes, List<Item> items) {
+
+    public enum Type {
+        DOCTOR,
+        TEMPLATE,
+        SLOT,
+        BOOK,
+        BOOK_EARLIEST,
+        BATCH,
+        CANCEL,
+        NO_SHOW,
+        DELAY,
+        RESIZE,
+        DELETE,
+        COMPLETE
+    }
+
+    public record Item(int token, String name, TokenSource source) {
+    }
+
+    public static Operation doctor(long offsetMicros, String name, String specialization) {
+        return new Operation(Type.DOCTOR, offsetMicros, -1, -1, -1, name, specialization, null, null, null, null, 0, 0,
+                List.of());
+    }
+
+    public static Operation template(long offsetMicros, int doctor, String dayOfWeek, LocalTime start, LocalTime end,
+                                     int slotMinutes, int capacity) {
+        return new Operation(Type.TEMPLATE, offsetMicros, doctor, -1, -1, null, dayOfWeek, null, null, start, end,
+                capacity, slotMinutes, List.of());
+    }
+
+    public static Operation slot(long offsetMicros, int doctor, LocalDate date, LocalTime start, LocalTime end,
+                                 int capacity) {
+        return new Operation(Type.SLOT, offsetMicros, doctor, -1, -1, null, null, null, date, start, end, capacity, 0,
+                List.of());
+    }
+
+    public static Operation book(long offsetMicros, int doctor, int token, String patientName, TokenSource source,
+                                 LocalDate date) {
+        return new Operation(Type.BOOK, offsetMicros, doctor, -1, token, patientName, null, source, date, null, null,
+                0, 0, List.of());
+    }
+
+    public static Operation bookEarliest(long offsetMicros, int doctor, int token, String patientName,
+                                         String specialization, TokenSource source, LocalDate date) {
+        return new Operation(Type.BOOK_EARLIEST, offsetMicros, doctor, -1, token, patientName, specialization, source,
+                date, null, null, 0, 0, List.of());
+    }
+
+    public static Operation batch(long offsetMicros, int doctor, LocalDate date, List<Item> items) {
+        return new Operation(Type.BATCH, offsetMicros, doctor, -1, -1, null, null, null, date, null, null, 0, 0,
+                List.copyOf(items));
+    }
+
+    public static Operation onToken(Type type, long offsetMicros, int token) {
+        return new Operation(type, offsetMicros, -1, -1, token, null, null, null, null, null, null, 0, 0, List.of());
+    }
+
+    public static Operation onSlot(Type type, long offsetMicros, int doctor, LocalDate date, int slot, int capacity,
+                                   int minutes) {
+        return new Operation(type, offsetMicros, doctor, slot, -1, null, null, null, date, null, null, capacity,
+                minutes, List.of());
+    }
+}
@@ -0,0 +1,202 @@
+package com.medoc.opd.replay;
+
+import com.medoc.opd.model.TokenSource;
+
+import java.io.BufferedInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+final class OperationLog {
+    static final int MAGIC = 0x4F50444F;
+    static final int VERSION = 2;
+
+    private static final Operation.Type[] TYPES = Operation.Type.values();
+    private static final TokenSource[] SOURCES = TokenSource.values();
+
+    private OperationLog() {
+    }
+
+    static void writeHeader(DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+    }
+
+    static void write(DataOutput out, Operation op, long previousOffsetMicros) throws IOException {
+        out.writeByte(op.type().ordinal());
+        writeVarLong(out, Math.max(0, op.offsetMicros() - previousOffsetMicros));
+        switch (op.type()) {
+            case DOCTOR -> {
+                writeString(out, op.name());
+                writeString(out, op.detail());
+            }
+            case TEMPLATE -> {
+                writeRef(out, op.doctor());
+                writeString(out, op.detail());
+                writeTime(out, op.start());
+                writeTime(out, op.end());
+                writeVarLong(out, op.minutes());
+                writeVarLong(out, op.capacity());
+            }
+            case SLOT -> {
+                writeRef(out, op.doctor());
+                writeVarLong(out, op.date().toEpochDay());
+                writeTime(out, op.start());
+                writeTime(out, op.end());
+                writeVarLong(out, op.capacity());
+            }
+            case BOOK -> {
+                writeRef(out, op.doctor());
+                writeRef(out, op.token());
+                writeString(out, op.name());
+                writeSource(out, op.source());
+                writeVarLong(out, op.date().toEpochDay());
+            }
+            case BOOK_EARLIEST -> {
+                writeRef(out, op.doctor());
+                writeRef(out, op.token());
+                writeString(out, op.name());
+                writeString(out, op.detail());
+                writeSource(out, op.source());
+                writeVarLong(out, op.date().toEpochDay());
+            }
+            case BATCH -> {
+                writeRef(out, op.doctor());
+                writeVarLong(out, op.date().toEpochDay());
+                writeVarLong(out, op.items().size());
+                for (Operation.Item item : op.items()) {
+                    writeRef(out, item.token());
+                    writeString(out, item.name());
+                    writeSource(out, item.source());
+                }
+            }
+            case CANCEL, NO_SHOW, COMPLETE -> writeRef(out, op.token());
+            case DELAY, RESIZE, DELETE -> {
+                writeRef(out, op.doctor());
+                writeVarLong(out, op.date().toEpochDay());
+                writeRef(out, op.slot());
+                writeVarLong(out, op.capacity());
+                out.writeInt(op.minutes());
+            }
+        }
+    }
+
+    static List<Operation> readAll(Path file) throws IOException {
+        List<Operation> operations = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not an operation recording: " + file);
+            }
+            int version = in.readUnsignedByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported recording version " + version + " in " + file);
+            }
+            long offset = 0;
+            while (true) {
+                int tag;
+                try {
+                    tag = in.readUnsignedByte();
+                } catch (EOFException e) {
+                    break;
+                }
+                try {
+                    offset += readVarLong(in);
+                    operations.add(read(in, TYPES[tag], offset));
+                } catch (EOFException e) {
+                    break;
+                }
+            }
+        }
+        return operations;
+    }
+
+    private static Operation read(DataInput in, Operation.Type type, long offset) throws IOException {
+        return switch (type) {
+            case DOCTOR -> Operation.doctor(offset, readString(in), readString(in));
+            case TEMPLATE -> Operation.template(offset, readRef(in), readString(in), readTime(in), readTime(in),
+                    (int) readVarLong(in), (int) readVarLong(in));
+            case SLOT -> Operation.slot(offset, readRef(in), LocalDate.ofEpochDay(readVarLong(in)), readTime(in),
+                    readTime(in), (int) readVarLong(in));
+            case BOOK -> Operation.book(offset, readRef(in), readRef(in), readString(in), readSource(in),
+                    LocalDate.ofEpochDay(readVarLong(in)));
+            case BOOK_EARLIEST -> Operation.bookEarliest(offset, readRef(in), readRef(in), readString(in),
+                    readString(in), readSource(in), LocalDate.ofEpochDay(readVarLong(in)));
+            case BATCH -> {
+                int doctor = readRef(in);
+                LocalDate date = LocalDate.ofEpochDay(readVarLong(in));
+                int count = (int) readVarLong(in);
+                List<Operation.Item> items = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    items.add(new Operation.Item(readRef(in), readString(in), readSource(in)));
+                }
+                yield Operation.batch(offset, doctor, date, items);
+            }
+            case CANCEL, NO_SHOW, COMPLETE -> Operation.onToken(type, offset, readRef(in));
+            case DELAY, RESIZE, DELETE -> Operation.onSlot(type, offset, readRef(in),
+                    LocalDate.ofEpochDay(readVarLong(in)), readRef(in), (int) readVarLong(in), in.readInt());
+        };
+    }
+
+    private static void writeRef(DataOutput out, int ref) throws IOException {
+        writeVarLong(out, ref + 1L);
+    }
+
+    private static int readRef(DataInput in) throws IOException {
+        return (int) readVarLong(in) - 1;
+    }
+
+    private static void writeTime(DataOutput out, LocalTime time) throws IOException {
+        writeVarLong(out, time.toSecondOfDay());
+    }
+
+    private static LocalTime readTime(DataInput in) throws IOException {
+        return LocalTime.ofSecondOfDay(readVarLong(in));
+    }
+
+    private static void writeSource(DataOutput out, TokenSource source) throws IOException {
+        out.writeByte(source == null ? -1 : source.ordinal());
+    }
+
+    private static TokenSource readSource(DataInput in) throws IOException {
+        byte source = in.readByte();
+        return source < 0 ? null : SOURCES[source];
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.medoc.opd.replay;
+
+import com.medoc.opd.model.BookingItem;
+import com.medoc.opd.model.Doctor;
+import com.medoc.opd.model.OpdSlot;
+import com.medoc.opd.model.Token;
+import com.medoc.opd.model.TokenSource;
+import com.medoc.opd.repository.SlotRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Component
+@Slf4j
+public class OperationRecorder {
+    private final SlotRepository slotRepository;
+    private final Path file;
+    private final Map<String, Integer> doctorRefs = new ConcurrentHashMap<>();
+    private final Map<String, Integer> tokenRefs = new ConcurrentHashMap<>();
+    private final AtomicInteger nextToken = new AtomicInteger();
+
+    private DataOutputStream out;
+    private long startedNanos;
+    private long lastOffsetMicros;
+    private boolean dirty;
+
+    public OperationRecorder(SlotRepository slotRepository, @Value("${opd.recorder.file:}") String file) {
+        this.slotRepository = slotRepository;
+        this.file = file.isBlank() ? null : Path.of(file);
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (file == null) {
+            return;
+        }
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+        OperationLog.writeHeader(out);
+        startedNanos = System.nanoTime();
+        log.info("Recording operations to {}", file);
+    }
+
+    public boolean isEnabled() {
+        return out != null;
+    }
+
+    public void doctorOnboarded(Doctor doctor) {
+        if (!isEnabled()) {
+            return;
+        }
+        synchronized (this) {
+            doctorRefs.put(doctor.getId(), doctorRefs.size());
+            append(Operation.doctor(now(), doctor.getName(), doctor.getSpecialization()));
+        }
+    }
+
+    public void templateAdded(String doctorId, DayOfWeek dayOfWeek, LocalTime start, LocalTime end, int slotMinutes,
+                              int capacity) {
+        if (isEnabled()) {
+            append(Operation.template(now(), doctorRef(doctorId), String.valueOf(dayOfWeek), start, end,
+                    slotMinutes, capacity));
+        }
+    }
+
+    public void slotCreated(String doctorId, LocalDate date, LocalTime start, LocalTime end, int capacity) {
+        if (isEnabled()) {
+            append(Operation.slot(now(), doctorRef(doctorId), date, start, end, capacity));
+        }
+    }
+
+    public int booking(String doctorId, String patientName, TokenSource source, LocalDate date) {
+        if (!isEnabled()) {
+            return -1;
+        }
+        int token = nextToken.getAndIncrement();
+        append(Operation.book(now(), doctorRef(doctorId), token, patientName, source, date));
+        return token;
+    }
+
+    public int earliestBooking(String doctorId, String specialization, String patientName, TokenSource source,
+                               LocalDate date) {
+        if (!isEnabled()) {
+            return -1;
+        }
+        int token = nextToken.getAndIncrement();
+        append(Operation.bookEarliest(now(), doctorRef(doctorId), token, patientName, specialization, source, date));
+        return token;
+    }
+
+    public int[] batch(String doctorId, LocalDate date, List<BookingItem> items) {
+        int[] tokens = new int[items.size()];
+        if (!isEnabled()) {
+            Arrays.fill(tokens, -1);
+            return tokens;
+        }
+        List<Operation.Item> recorded = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            tokens[i] = nextToken.getAndIncrement();
+            recorded.add(new Operation.Item(tokens[i], items.get(i).getPatientName(), items.get(i).getSource()));
+        }
+        append(Operation.batch(now(), doctorRef(doctorId), date, recorded));
+        return tokens;
+    }
+
+    public void tokenBooked(int token, Token booked) {
+        if (token >= 0 && booked != null) {
+            tokenRefs.put(booked.getId(), token);
+        }
+    }
+
+    public void cancel(String tokenId) {
+        if (isEnabled()) {
+            append(Operation.onToken(Operation.Type.CANCEL, now(), tokenRefs.getOrDefault(tokenId, -1)));
+        }
+    }
+
+    public void noShow(String tokenId) {
+        if (isEnabled()) {
+            append(Operation.onToken(Operation.Type.NO_SHOW, now(), tokenRefs.getOrDefault(tokenId, -1)));
+        }
+    }
+
+    public void complete(String tokenId) {
+        if (isEnabled()) {
+            append(Operation.onToken(Operation.Type.COMPLETE, now(), tokenRefs.getOrDefault(tokenId, -1)));
+        }
+    }
+
+    public void delay(String slotId, int minutes) {
+        if (isEnabled()) {
+            appendSlotOperation(Operation.Type.DELAY, slotId, 0, minutes);
+        }
+    }
+
+    public void resize(String slotId, int capacity) {
+        if (isEnabled()) {
+            appendSlotOperation(Operation.Type.RESIZE, slotId, capacity, 0);
+        }
+    }
+
+    public void delete(String slotId) {
+        if (isEnabled()) {
+            appendSlotOperation(Operation.Type.DELETE, slotId, 0, 0);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${opd.recorder.flush-interval-ms:1000}")
+    public synchronized void flush() {
+        if (!dirty) {
+            return;
+        }
+        try {
+            out.flush();
+            dirty = false;
+        } catch (IOException e) {
+            log.warn("Could not flush operation recording", e);
+        }
+    }
+
+    @PreDestroy
+    public synchronized void stop() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+    }
+
+    private void appendSlotOperation(Operation.Type type, String slotId, int capacity, int minutes) {
+        Optional<OpdSlot> slot = slotRepository.findById(slotId);
+        if (slot.isEmpty()) {
+            append(Operation.onSlot(type, now(), -1, LocalDate.EPOCH, -1, capacity, minutes));
+            return;
+        }
+        List<OpdSlot> day = slotRepository.findByDoctorAndDate(slot.get().getDoctorId(), slot.get().getDate());
+        int position = -1;
+        for (int i = 0; i < day.size(); i++) {
+            if (day.get(i).getId().equals(slotId)) {
+                position = i;
+                break;
+            }
+        }
+        append(Operation.onSlot(type, now(), doctorRef(slot.get().getDoctorId()), slot.get().getDate(), position,
+                capacity, minutes));
+    }
+
+    private int doctorRef(String doctorId) {
+        return doctorId == null ? -1 : doctorRefs.getOrDefault(doctorId, -1);
+    }
+
+    private long now() {
+        return (System.nanoTime() - startedNanos) / 1_000;
+    }
+
+    private synchronized void append(Operation operation) {
+        if (out == null) {
+            return;
+        }
+        long offset = Math.max(operation.offsetMicros(), lastOffsetMicros);
+        try {
+            OperationLog.write(out, operation, lastOffsetMicros);
+            lastOffsetMicros = offset;
+            dirty = true;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not record " + operation.type(), e);
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package com.medoc.opd.replay;
+
+import com.medoc.opd.model.BookingItem;
+import com.medoc.opd.model.BookingResult;
+import com.medoc.opd.model.OpdSlot;
+import com.medoc.opd.model.Token;
+import com.medoc.opd.repository.SlotRepository;
+import com.medoc.opd.service.OpdService;
+import com.medoc.opd.service.ScheduleService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DayOfWeek;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.LockSupport;
+
+@Component
+@ConditionalOnProperty(name = "opd.replay.mode")
+@Slf4j
+public class ReplayRunner implements CommandLineRunner {
+    private static final int MAX_DIFF_LINES = 50;
+
+    private final OpdService opdService;
+    private final ScheduleService scheduleService;
+    private final SlotRepository slotRepository;
+    private final ObjectProvider<SyntheticWorkload> syntheticWorkload;
+    private final ConfigurableApplicationContext context;
+    private final String mode;
+    private final String file;
+    private final double speed;
+    private final String stateOut;
+    private final String baseline;
+    private final boolean exit;
+
+    private final List<String> doctorIds = new ArrayList<>();
+    private final List<String> tokenIds = new ArrayList<>();
+
+    public ReplayRunner(OpdService opdService, ScheduleService scheduleService, SlotRepository slotRepository,
+                        ObjectProvider<SyntheticWorkload> syntheticWorkload, ConfigurableApplicationContext context,
+                        @Value("${opd.replay.mode}") String mode,
+                        @Value("${opd.replay.file:}") String file,
+                        @Value("${opd.replay.speed:0}") double speed,
+                        @Value("${opd.replay.state-out:}") String stateOut,
+                        @Value("${opd.replay.baseline:}") String baseline,
+                        @Value("${opd.replay.exit:true}") boolean exit) {
+        this.opdService = opdService;
+        this.scheduleService = scheduleService;
+        this.slotRepository = slotRepository;
+        this.syntheticWorkload = syntheticWorkload;
+        this.context = context;
+        this.mode = mode;
+        this.file = file;
+        this.speed = speed;
+        this.stateOut = stateOut;
+        this.baseline = baseline;
+        this.exit = exit;
+    }
+
+    @Override
+    public void run(String... args) throws IOException {
+        List<Operation> operations = switch (mode) {
+            case "file" -> {
+                if (file.isBlank()) {
+                    throw new IllegalArgumentException("opd.replay.file is required in file mode");
+                }
+                yield OperationLog.readAll(Path.of(file));
+            }
+            case "synthetic" -> syntheticWorkload.getObject().generate();
+            default -> throw new IllegalArgumentException("Unknown opd.replay.mode '" + mode + "'");
+        };
+        log.info("Replaying {} operations ({} mode, speed {})", operations.size(), mode,
+                speed > 0 ? speed + "x" : "unthrottled");
+
+        Map<Operation.Type, Latencies> latencies = new EnumMap<>(Operation.Type.class);
+        long started = System.nanoTime();
+        for (Operation operation : operations) {
+            if (speed > 0) {
+                long due = started + (long) (operation.offsetMicros() * 1_000 / speed);
+                for (long wait = due - System.nanoTime(); wait > 0; wait = due - System.nanoTime()) {
+                    LockSupport.parkNanos(wait);
+                }
+            }
+            long begin = System.nanoTime();
+            boolean ok;
+            try {
+                execute(operation);
+                ok = true;
+            } catch (RuntimeException e) {
+                ok = false;
+            }
+            latencies.computeIfAbsent(operation.type(), k -> new Latencies()).add(System.nanoTime() - begin, ok);
+        }
+        long elapsed = System.nanoTime() - started;
+
+        report(operations.size(), elapsed, latencies);
+        compareState();
+        if (exit) {
+            System.exit(SpringApplication.exit(context));
+        }
+    }
+
+    private void execute(Operation op) {
+        switch (op.type()) {
+            case DOCTOR -> doctorIds.add(opdService.onboardDoctor(op.name(), op.detail()).getId());
+            case TEMPLATE -> scheduleService.addTemplate(doctor(op), DayOfWeek.valueOf(op.detail()), op.start(),
+                    op.end(), op.minutes(), op.capacity());
+            case SLOT -> opdService.createSlot(doctor(op), op.date(), op.start(), op.end(), op.capacity());
+            case BOOK -> bind(op.token(), opdService.bookToken(op.name(), op.source(), doctor(op), op.date()));
+            case BOOK_EARLIEST -> bind(op.token(), op.doctor() >= 0
+                    ? opdService.bookToken(op.name(), op.source(), doctor(op), op.date())
+                    : opdService.bookEarliest(op.name(), op.source(), op.detail(), op.date()));
+            case BATCH -> batch(op);
+            case CANCEL -> opdService.cancelToken(token(op));
+            case NO_SHOW -> opdService.toggleNoShow(token(op));
+            case COMPLETE -> opdService.completeToken(token(op));
+            case DELAY -> opdService.delaySlot(slot(op), op.minutes());
+            case RESIZE -> opdService.resizeSlot(slot(op), op.capacity());
+            case DELETE -> opdService.deleteSlot(slot(op));
+        }
+    }
+
+    private void batch(Operation op) {
+        String doctorId = op.doctor() >= 0 ? doctor(op) : null;
+        List<BookingItem> items = op.items().stream()
+                .map(item -> new BookingItem(item.name(), item.source(), doctorId, op.date()))
+                .toList();
+        List<BookingResult> results = opdService.bookTokens(items);
+        for (int i = 0; i < results.size(); i++) {
+            if (results.get(i).isAllocated()) {
+                bind(op.items().get(i).token(), results.get(i).getToken());
+            }
+        }
+    }
+
+    private String doctor(Operation op) {
+        if (op.doctor() < 0 || op.doctor() >= doctorIds.size()) {
+            throw new RuntimeException("Unknown doctor reference " + op.doctor());
+        }
+        return doctorIds.get(op.doctor());
+    }
+
+    private String token(Operation op) {
+        String tokenId = op.token() >= 0 && op.token() < tokenIds.size() ? tokenIds.get(op.token()) : null;
+        if (tokenId == null) {
+            throw new RuntimeException("Unknown token reference " + op.token());
+        }
+        return tokenId;
+    }
+
+    private String slot(Operation op) {
+        List<OpdSlot> day = opdService.getDoctorSlots(doctor(op), op.date());
+        if (op.slot() < 0 || op.slot() >= day.size()) {
+            throw new RuntimeException("Unknown slot reference " + op.slot());
+        }
+        return day.get(op.slot()).getId();
+    }
+
+    private void bind(int ref, Token token) {
+        while (tokenIds.size() <= ref) {
+            tokenIds.add(null);
+        }
+        tokenIds.set(ref, token.getId());
+    }
+
+    private void report(int count, long elapsedNanos, Map<Operation.Type, Latencies> latencies) {
+        log.info("Replayed {} operations in {} ms ({} ops/s)", count, elapsedNanos / 1_000_000,
+                String.format("%.0f", count * 1e9 / Math.max(elapsedNanos, 1)));
+        log.info(String.format("%-14s %9s %8s %9s %9s %9s %9s %9s",
+                "operation", "count", "failed", "p50 us", "p90 us", "p99 us", "p99.9 us", "max us"));
+        latencies.forEach((type, l) -> log.info(String.format("%-14s %9d %8d %9.1f %9.1f %9.1f %9.1f %9.1f",
+                type, l.size, l.failed, l.percentile(0.50), l.percentile(0.90), l.percentile(0.99),
+                l.percentile(0.999), l.percentile(1.0))));
+    }
+
+    private void compareState() throws IOException {
+        List<String> state = dumpState();
+        if (!stateOut.isBlank()) {
+            Files.write(Path.of(stateOut), state);
+            log.info("Final allocation state ({} slots) written to {}", state.size(), stateOut);
+        }
+        if (baseline.isBlank()) {
+            return;
+        }
+        Set<String> expected = new LinkedHashSet<>(Files.readAllLines(Path.of(baseline)));
+        Set<String> actual = new LinkedHashSet<>(state);
+        List<String> diff = new ArrayList<>();
+        expected.stream().filter(line -> !actual.contains(line)).forEach(line -> diff.add("- " + line));
+        actual.stream().filter(line -> !expected.contains(line)).forEach(line -> diff.add("+ " + line));
+        if (diff.isEmpty()) {
+            log.info("Final allocation state matches baseline {}", baseline);
+            return;
+        }
+        log.warn("Final allocation state differs from baseline {} in {} line(s):", baseline, diff.size());
+        diff.stream().limit(MAX_DIFF_LINES).forEach(line -> log.warn("  {}", line));
+    }
+
+    private List<String> dumpState() {
+        Map<String, Integer> tokenRefs = new HashMap<>();
+        for (int i = 0; i < tokenIds.size(); i++) {
+            if (tokenIds.get(i) != null) {
+                tokenRefs.put(tokenIds.get(i), i);
+            }
+        }
+        List<String> lines = new ArrayList<>();
+        for (int d = 0; d < doctorIds.size(); d++) {
+            for (OpdSlot slot : slotRepository.findByDoctorId(doctorIds.get(d))) {
+                StringBuilder line = new StringBuilder()
+                        .append('d').append(d).append(' ').append(slot.getDate()).append(' ')
+                        .append(slot.getStartTime()).append('-').append(slot.getEndTime())
+                        .append(" cap=").append(slot.getMaxCapacity()).append(" :");
+                for (Token token : slot.getTokens()) {
+                    Integer ref = tokenRefs.get(token.getId());
+                    line.append(" t").append(ref == null ? "?" : ref).append('/').append(token.getStatus());
+                }
+                lines.add(line.toString());
+            }
+        }
+        return lines;
+    }
+
+    private static final class Latencies {
+        private long[] nanos = new long[1024];
+        private int size;
+        private int failed;
+        private boolean sorted;
+
+        void add(long value, boolean ok) {
+            if (size == nanos.length) {
+                nanos = Arrays.copyOf(nanos, size * 2);
+            }
+            nanos[size++] = value;
+            sorted = false;
+            if (!ok) {
+                failed++;
+            }
+        }
+
+        double percentile(double p) {
+            if (!sorted) {
+                Arrays.sort(nanos, 0, size);
+                sorted = true;
+            }
+            int index = (int) Math.min(size - 1, Math.max(0, Math.ceil(p * size) - 1));
+            return nanos[index] / 1_000.0;
+        }
+    }
+}
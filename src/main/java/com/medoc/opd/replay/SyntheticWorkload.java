@@ -0,0 +1,135 @@
+package com.medoc.opd.replay;
+
+import com.medoc.opd.model.TokenSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+@Component
+@ConditionalOnProperty(name = "opd.replay.mode", havingValue = "synthetic")
+public class SyntheticWorkload {
+    private static final String[] SPECIALIZATIONS = {"Cardiology", "Orthopedics", "Pediatrics", "Dermatology"};
+    private static final LocalTime DAY_START = LocalTime.of(9, 0);
+    private static final int SLOT_MINUTES = 30;
+
+    private final int doctors;
+    private final int days;
+    private final int slotsPerDay;
+    private final int capacity;
+    private final int operations;
+    private final double rate;
+    private final long seed;
+    private final Mix<TokenSource> sourceMix;
+    private final Mix<Operation.Type> operationMix;
+
+    public SyntheticWorkload(@Value("${opd.replay.synthetic.doctors:50}") int doctors,
+                             @Value("${opd.replay.synthetic.days:3}") int days,
+                             @Value("${opd.replay.synthetic.slots-per-day:8}") int slotsPerDay,
+                             @Value("${opd.replay.synthetic.capacity:6}") int capacity,
+                             @Value("${opd.replay.synthetic.operations:100000}") int operations,
+                             @Value("${opd.replay.synthetic.rate:1000}") double rate,
+                             @Value("${opd.replay.synthetic.seed:42}") long seed,
+                             @Value("${opd.replay.synthetic.source-mix:WALK_IN:40,ONLINE:30,FOLLOW_UP:15,PAID_PREMIUM:10,EMERGENCY:5}")
+                             String sourceMix,
+                             @Value("${opd.replay.synthetic.operation-mix:BOOK:80,CANCEL:6,NO_SHOW:8,DELAY:2,RESIZE:3,DELETE:1}")
+                             String operationMix) {
+        if (doctors <= 0 || days <= 0 || slotsPerDay <= 0 || slotsPerDay * SLOT_MINUTES > 12 * 60) {
+            throw new IllegalArgumentException("Synthetic schedule must have doctors, days and at most 24 slots per day");
+        }
+        this.doctors = doctors;
+        this.days = days;
+        this.slotsPerDay = slotsPerDay;
+        this.capacity = capacity;
+        this.operations = operations;
+        this.rate = rate;
+        this.seed = seed;
+        this.sourceMix = Mix.parse(TokenSource.class, sourceMix);
+        this.operationMix = Mix.parse(Operation.Type.class, operationMix);
+    }
+
+    public List<Operation> generate() {
+        SplittableRandom random = new SplittableRandom(seed);
+        LocalDate firstDay = LocalDate.now().plusDays(1);
+        List<Operation> stream = new ArrayList<>(doctors * (1 + days * slotsPerDay) + operations);
+
+        for (int d = 0; d < doctors; d++) {
+            stream.add(Operation.doctor(0, "Doctor " + d, SPECIALIZATIONS[d % SPECIALIZATIONS.length]));
+            for (int day = 0; day < days; day++) {
+                for (int s = 0; s < slotsPerDay; s++) {
+                    LocalTime start = DAY_START.plusMinutes((long) s * SLOT_MINUTES);
+                    stream.add(Operation.slot(0, d, firstDay.plusDays(day), start, start.plusMinutes(SLOT_MINUTES),
+                            capacity));
+                }
+            }
+        }
+
+        int tokens = 0;
+        for (int i = 0; i < operations; i++) {
+            long offset = (long) (i * 1_000_000L / rate);
+            int doctor = random.nextInt(doctors);
+            LocalDate date = firstDay.plusDays(random.nextInt(days));
+            Operation.Type type = tokens == 0 ? Operation.Type.BOOK : operationMix.pick(random);
+            stream.add(switch (type) {
+                case BOOK -> Operation.book(offset, doctor, tokens++, "Patient " + i, sourceMix.pick(random), date);
+                case BOOK_EARLIEST -> Operation.bookEarliest(offset, -1, tokens++, "Patient " + i,
+                        SPECIALIZATIONS[random.nextInt(SPECIALIZATIONS.length)], sourceMix.pick(random), date);
+                case BATCH -> {
+                    List<Operation.Item> items = new ArrayList<>();
+                    for (int k = 2 + random.nextInt(3); k > 0; k--) {
+                        items.add(new Operation.Item(tokens++, "Patient " + i + "." + k, sourceMix.pick(random)));
+                    }
+                    yield Operation.batch(offset, doctor, date, items);
+                }
+                case CANCEL, NO_SHOW, COMPLETE -> Operation.onToken(type, offset, random.nextInt(tokens));
+                case DELAY -> Operation.onSlot(type, offset, doctor, date, random.nextInt(slotsPerDay), 0,
+                        5 + random.nextInt(26));
+                case RESIZE -> Operation.onSlot(type, offset, doctor, date, random.nextInt(slotsPerDay),
+                        Math.max(0, capacity - 2 + random.nextInt(5)), 0);
+                case DELETE -> Operation.onSlot(type, offset, doctor, date, random.nextInt(slotsPerDay), 0, 0);
+                default -> throw new IllegalArgumentException(type + " is not supported in the synthetic mix");
+            });
+        }
+        return stream;
+    }
+
+    private record Mix<E extends Enum<E>>(List<E> values, int[] cumulative) {
+        static <E extends Enum<E>> Mix<E> parse(Class<E> type, String spec) {
+            List<E> values = new ArrayList<>();
+            List<Integer> weights = new ArrayList<>();
+            for (String part : spec.split(",")) {
+                String[] pair = part.trim().split(":");
+                if (pair.length != 2) {
+                    throw new IllegalArgumentException("Expected NAME:weight in mix '" + spec + "'");
+                }
+                values.add(Enum.valueOf(type, pair[0].trim()));
+                weights.add(Integer.parseInt(pair[1].trim()));
+            }
+            int[] cumulative = new int[weights.size()];
+            int sum = 0;
+            for (int i = 0; i < cumulative.length; i++) {
+                sum += weights.get(i);
+                cumulative[i] = sum;
+            }
+            if (sum <= 0) {
+                throw new IllegalArgumentException("Mix '" + spec + "' has no positive weights");
+            }
+            return new Mix<>(values, cumulative);
+        }
+
+        E pick(SplittableRandom random) {
+            int roll = random.nextInt(cumulative[cumulative.length - 1]);
+            for (int i = 0; i < cumulative.length; i++) {
+                if (roll < cumulative[i]) {
+                    return values.get(i);
+                }
+            }
+            return values.get(values.size() - 1);
+        }
+    }
+}
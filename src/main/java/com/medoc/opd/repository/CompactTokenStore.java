@@ -0,0 +1,402 @@
+package com.medoc.opd.repository;
+
+import com.medoc.opd.model.Token;
+import com.medoc.opd.model.TokenSource;
+import com.medoc.opd.model.TokenStatus;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Column store for finished tokens. Generator keys and UUIDs are packed into two longs; any other id (fixtures,
+ * hand-written or non-canonical ids) is kept as the raw string and found through a side map instead.
+ */
+class CompactTokenStore {
+    private static final TokenSource[] SOURCES = TokenSource.values();
+    private static final TokenStatus[] STATUSES = TokenStatus.values();
+    private static final byte NONE = -1;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private long[] idHigh = new long[INITIAL_CAPACITY];
+    private long[] idLow = new long[INITIAL_CAPACITY];
+    private long[] slotHigh = new long[INITIAL_CAPACITY];
+    private long[] slotLow = new long[INITIAL_CAPACITY];
+    private long[] createdAt = new long[INITIAL_CAPACITY];
+    private long[] globalOrder = new long[INITIAL_CAPACITY];
+    private byte[] source = new byte[INITIAL_CAPACITY];
+    private byte[] status = new byte[INITIAL_CAPACITY];
+    private String[] patientName = new String[INITIAL_CAPACITY];
+    private String[] rawId = new String[INITIAL_CAPACITY];
+    private String[] rawSlotId = new String[INITIAL_CAPACITY];
+    private int size;
+
+    private int[] table = new int[INITIAL_CAPACITY * 2];
+    private final Map<String, Integer> rawRows = new HashMap<>();
+    private final Map<String, Rows> rowsByPatient = new HashMap<>();
+    private final Map<String, Rows> rowsBySlot = new HashMap<>();
+    private final Rows[] rowsByStatus = new Rows[STATUSES.length];
+
+    void put(Token token) {
+        String id = token.getId();
+        boolean packed = packable(id);
+        lock.writeLock().lock();
+        try {
+            int row = find(id);
+            if (row < 0) {
+                ensureCapacity(size + 1);
+                row = size++;
+                idHigh[row] = packed ? highBits(id) : 0;
+                idLow[row] = packed ? lowBits(id) : 0;
+                rawId[row] = packed ? null : id;
+                insert(row);
+            } else {
+                unindexRow(row);
+            }
+            write(row, token);
+            indexRow(row);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    Token get(String tokenId) {
+        lock.readLock().lock();
+        try {
+            int row = find(tokenId);
+            return row < 0 ? null : materialize(row);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    List<Token> all() {
+        lock.readLock().lock();
+        try {
+            List<Token> tokens = new ArrayList<>(size);
+            for (int row = 0; row < size; row++) {
+                tokens.add(materialize(row));
+            }
+            return tokens;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    List<Token> unassignedCreatedBefore(LocalDateTime cutoff) {
+        long cutoffNanos = toNanos(cutoff);
+        lock.readLock().lock();
+        try {
+            List<Token> tokens = new ArrayList<>();
+            for (int row = 0; row < size; row++) {
+                if (slotIdOf(row) == null && createdAt[row] < cutoffNanos) {
+                    tokens.add(materialize(row));
+                }
+            }
+            return tokens;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    List<Token> withPatient(String patientKey) {
+        lock.readLock().lock();
+        try {
+            List<Token> tokens = new ArrayList<>();
+            addRows(tokens, rowsByPatient.get(patientKey));
+            return tokens;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    List<Token> assignedTo(Collection<String> slotIds) {
+        lock.readLock().lock();
+        try {
+            List<Token> tokens = new ArrayList<>();
+            for (String slotId : slotIds) {
+                addRows(tokens, rowsBySlot.get(slotId));
+            }
+            return tokens;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    List<Token> withStatus(TokenStatus wanted) {
+        lock.readLock().lock();
+        try {
+            List<Token> tokens = new ArrayList<>();
+            addRows(tokens, rowsByStatus[wanted.ordinal()]);
+            return tokens;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void removeAll(Collection<String> tokenIds) {
+        lock.writeLock().lock();
+        try {
+            boolean[] removed = new boolean[size];
+            boolean any = false;
+            for (String tokenId : tokenIds) {
+                int row = find(tokenId);
+                if (row >= 0) {
+                    removed[row] = true;
+                    any = true;
+                }
+            }
+            if (any) {
+                compact(removed);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void write(int row, Token token) {
+        String slotId = token.getAssignedSlotId();
+        boolean packed = slotId != null && packable(slotId);
+        slotHigh[row] = packed ? highBits(slotId) : 0;
+        slotLow[row] = packed ? lowBits(slotId) : 0;
+        rawSlotId[row] = packed ? null : slotId;
+        createdAt[row] = token.getCreatedAt() == null ? Long.MIN_VALUE : toNanos(token.getCreatedAt());
+        globalOrder[row] = token.getGlobalOrder();
+        source[row] = token.getSource() == null ? NONE : (byte) token.getSource().ordinal();
+        status[row] = token.getStatus() == null ? NONE : (byte) token.getStatus().ordinal();
+        patientName[row] = token.getPatientName();
+    }
+
+    private Token materialize(int row) {
+        Token token = new Token();
+        token.setId(rawId[row] != null ? rawId[row] : toId(idHigh[row], idLow[row]));
+        token.setPatientName(patientName[row]);
+        token.setSource(source[row] == NONE ? null : SOURCES[source[row]]);
+        token.setStatus(status[row] == NONE ? null : STATUSES[status[row]]);
+        token.setAssignedSlotId(slotIdOf(row));
+        if (createdAt[row] != Long.MIN_VALUE) {
+            token.setCreatedAt(LocalDateTime.ofEpochSecond(Math.floorDiv(createdAt[row], 1_000_000_000L),
+                    (int) Math.floorMod(createdAt[row], 1_000_000_000L), ZoneOffset.UTC));
+        }
+        token.setGlobalOrder(globalOrder[row]);
+        return token;
+    }
+
+    private void compact(boolean[] removed) {
+        int kept = 0;
+        for (int row = 0; row < size; row++) {
+            if (removed[row]) {
+                continue;
+            }
+            if (kept != row) {
+                idHigh[kept] = idHigh[row];
+                idLow[kept] = idLow[row];
+                slotHigh[kept] = slotHigh[row];
+                slotLow[kept] = slotLow[row];
+                createdAt[kept] = createdAt[row];
+                globalOrder[kept] = globalOrder[row];
+                source[kept] = source[row];
+                status[kept] = status[row];
+                patientName[kept] = patientName[row];
+                rawId[kept] = rawId[row];
+                rawSlotId[kept] = rawSlotId[row];
+            }
+            kept++;
+        }
+        Arrays.fill(patientName, kept, size, null);
+        Arrays.fill(rawId, kept, size, null);
+        Arrays.fill(rawSlotId, kept, size, null);
+        size = kept;
+        Arrays.fill(table, 0);
+        rawRows.clear();
+        rowsByPatient.clear();
+        rowsBySlot.clear();
+        Arrays.fill(rowsByStatus, null);
+        for (int row = 0; row < size; row++) {
+            insert(row);
+            indexRow(row);
+        }
+    }
+
+    private void addRows(List<Token> tokens, Rows rows) {
+        for (int i = 0; rows != null && i < rows.size; i++) {
+            tokens.add(materialize(rows.rows[i]));
+        }
+    }
+
+    private void indexRow(int row) {
+        add(rowsByPatient, TokenRepository.patientKey(patientName[row]), row);
+        add(rowsBySlot, slotIdOf(row), row);
+        if (status[row] != NONE) {
+            if (rowsByStatus[status[row]] == null) {
+                rowsByStatus[status[row]] = new Rows();
+            }
+            rowsByStatus[status[row]].add(row);
+        }
+    }
+
+    private void unindexRow(int row) {
+        remove(rowsByPatient, TokenRepository.patientKey(patientName[row]), row);
+        remove(rowsBySlot, slotIdOf(row), row);
+        if (status[row] != NONE && rowsByStatus[status[row]] != null) {
+            rowsByStatus[status[row]].remove(row);
+        }
+    }
+
+    private String slotIdOf(int row) {
+        if (rawSlotId[row] != null) {
+            return rawSlotId[row];
+        }
+        return slotHigh[row] == 0 && slotLow[row] == 0 ? null : toId(slotHigh[row], slotLow[row]);
+    }
+
+    private static void add(Map<String, Rows> index, String key, int row) {
+        if (key != null) {
+            index.computeIfAbsent(key, k -> new Rows()).add(row);
+        }
+    }
+
+    private static void remove(Map<String, Rows> index, String key, int row) {
+        Rows rows = key == null ? null : index.get(key);
+        if (rows != null && rows.remove(row) && rows.size == 0) {
+            index.remove(key);
+        }
+    }
+
+    private int find(String id) {
+        if (!packable(id)) {
+            Integer row = rawRows.get(id);
+            return row == null ? -1 : row;
+        }
+        return find(highBits(id), lowBits(id));
+    }
+
+    private int find(long high, long low) {
+        int mask = table.length - 1;
+        for (int i = slotFor(high, low, mask); ; i = (i + 1) & mask) {
+            int entry = table[i];
+            if (entry == 0) {
+                return -1;
+            }
+            int row = entry - 1;
+            if (idLow[row] == low && idHigh[row] == high) {
+                return row;
+            }
+        }
+    }
+
+    private void insert(int row) {
+        if (rawId[row] != null) {
+            rawRows.put(rawId[row], row);
+            return;
+        }
+        int mask = table.length - 1;
+        int i = slotFor(idHigh[row], idLow[row], mask);
+        while (table[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        table[i] = row + 1;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required > idHigh.length) {
+            int capacity = idHigh.length * 2;
+            idHigh = Arrays.copyOf(idHigh, capacity);
+            idLow = Arrays.copyOf(idLow, capacity);
+            slotHigh = Arrays.copyOf(slotHigh, capacity);
+            slotLow = Arrays.copyOf(slotLow, capacity);
+            createdAt = Arrays.copyOf(createdAt, capacity);
+            globalOrder = Arrays.copyOf(globalOrder, capacity);
+            source = Arrays.copyOf(source, capacity);
+            status = Arrays.copyOf(status, capacity);
+            patientName = Arrays.copyOf(patientName, capacity);
+            rawId = Arrays.copyOf(rawId, capacity);
+            rawSlotId = Arrays.copyOf(rawSlotId, capacity);
+        }
+        if (required * 2 > table.length) {
+            table = new int[table.length * 2];
+            for (int row = 0; row < size; row++) {
+                insert(row);
+            }
+        }
+    }
+
+    private static final class Rows {
+        private int[] rows = new int[2];
+        private int size;
+
+        void add(int row) {
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, size * 2);
+            }
+            rows[size++] = row;
+        }
+
+        boolean remove(int row) {
+            for (int i = 0; i < size; i++) {
+                if (rows[i] == row) {
+                    rows[i] = rows[--size];
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Whether the id packs into two longs and unpacks to the same string; the all-zero pair marks "no slot".
+     */
+    private static boolean packable(String id) {
+        try {
+            long high = highBits(id);
+            long low = lowBits(id);
+            return (high != 0 || low != 0) && toId(high, low).equals(id);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static boolean isKey(String id) {
+        return id.indexOf('-') < 0;
+    }
+
+    private static long highBits(String id) {
+        return isKey(id) ? 0 : UUID.fromString(id).getMostSignificantBits();
+    }
+
+    private static long lowBits(String id) {
+        return isKey(id) ? Long.parseLong(id, Character.MAX_RADIX) : UUID.fromString(id).getLeastSignificantBits();
+    }
+
+    private static String toId(long high, long low) {
+        return high == 0 ? Long.toString(low, Character.MAX_RADIX) : new UUID(high, low).toString();
+    }
+
+    private static long toNanos(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + dateTime.getNano();
+    }
+
+    private static int slotFor(long high, long low, int mask) {
+        long h = (high ^ low) * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & mask;
+    }
+}
@@ -1,6 +1,8 @@
 package com.medoc.opd.repository;
 
 import com.medoc.opd.model.Doctor;
+import com.medoc.opd.service.EngineShards;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
 import java.util.ArrayList;
@@ -8,25 +10,49 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToIntFunction;
 
 @Repository
 public class DoctorRepository {
-    private final Map<String, Doctor> doctors = new ConcurrentHashMap<>();
+    private final ToIntFunction<String> shardOf;
+    private final List<Map<String, Doctor>> partitions = new ArrayList<>();
+
+    public DoctorRepository() {
+        this(id -> 0, 1);
+    }
+
+    @Autowired
+    public DoctorRepository(EngineShards engineShards) {
+        this(engineShards::shardOf, engineShards.shardCount());
+    }
+
+    private DoctorRepository(ToIntFunction<String> shardOf, int shardCount) {
+        this.shardOf = shardOf;
+        for (int i = 0; i < shardCount; i++) {
+            partitions.add(new ConcurrentHashMap<>());
+        }
+    }
 
     public Doctor save(Doctor doctor) {
-        doctors.put(doctor.getId(), doctor);
+        partition(doctor.getId()).put(doctor.getId(), doctor);
         return doctor;
     }
 
     public Optional<Doctor> findById(String id) {
-        return Optional.ofNullable(doctors.get(id));
+        return Optional.ofNullable(partition(id).get(id));
     }
 
     public List<Doctor> findAll() {
-        return new ArrayList<>(doctors.values());
+        List<Doctor> all = new ArrayList<>();
+        partitions.forEach(doctors -> all.addAll(doctors.values()));
+        return all;
     }
 
     public boolean existsById(String id) {
-        return doctors.containsKey(id);
+        return partition(id).containsKey(id);
+    }
+
+    private Map<String, Doctor> partition(String id) {
+        return partitions.get(shardOf.applyAsInt(id));
     }
 }
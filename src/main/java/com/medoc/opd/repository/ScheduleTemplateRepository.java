@@ -0,0 +1,37 @@
+package com.medoc.opd.repository;
+
+import com.medoc.opd.model.ScheduleTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+@Repository
+public class ScheduleTemplateRepository {
+    private final Map<String, List<ScheduleTemplate>> templatesByDoctor = new ConcurrentHashMap<>();
+
+    public ScheduleTemplate save(ScheduleTemplate template) {
+        List<ScheduleTemplate> templates = templatesByDoctor.computeIfAbsent(template.getDoctorId(),
+                k -> new CopyOnWriteArrayList<>());
+        templates.removeIf(existing -> existing.getId().equals(template.getId()));
+        templates.add(template);
+        return template;
+    }
+
+    public List<ScheduleTemplate> findByDoctorId(String doctorId) {
+        return templatesByDoctor.getOrDefault(doctorId, List.of());
+    }
+
+    public List<String> findDoctorIds() {
+        return new ArrayList<>(templatesByDoctor.keySet());
+    }
+
+    public List<ScheduleTemplate> findAll() {
+        List<ScheduleTemplate> all = new ArrayList<>();
+        templatesByDoctor.values().forEach(all::addAll);
+        return all;
+    }
+}
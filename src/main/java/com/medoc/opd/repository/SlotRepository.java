@@ -1,46 +1,180 @@
 package com.medoc.opd.repository;
 
 import com.medoc.opd.model.OpdSlot;
+import com.medoc.opd.service.EngineShards;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
+import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Optional;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.ToIntFunction;
 
+/**
+ * Slots are partitioned by engine shard: a slot lives in the partition of its own id and is indexed in the partition
+ * of its doctor, which are the same partition for ids minted by {@link EngineShards}.
+ */
 @Repository
 public class SlotRepository {
-    private final Map<String, OpdSlot> slots = new ConcurrentHashMap<>();
+    private final ToIntFunction<String> shardOf;
+    private final List<Partition> partitions = new ArrayList<>();
+
+    public SlotRepository() {
+        this(id -> 0, 1);
+    }
+
+    @Autowired
+    public SlotRepository(EngineShards engineShards) {
+        this(engineShards::shardOf, engineShards.shardCount());
+    }
+
+    private SlotRepository(ToIntFunction<String> shardOf, int shardCount) {
+        this.shardOf = shardOf;
+        for (int i = 0; i < shardCount; i++) {
+            partitions.add(new Partition());
+        }
+    }
 
     public OpdSlot save(OpdSlot slot) {
-        slots.put(slot.getId(), slot);
+        OpdSlot previous = partition(slot.getId()).slots.put(slot.getId(), slot);
+        if (previous != null) {
+            unindex(previous);
+        }
+        index(slot);
         return slot;
     }
 
+    public void saveAll(Collection<OpdSlot> batch) {
+        Map<String, OpdSlot> byId = new HashMap<>();
+        Map<String, TreeMap<SlotKey, OpdSlot>> byDoctor = new HashMap<>();
+        for (OpdSlot slot : batch) {
+            OpdSlot previous = partition(slot.getId()).slots.get(slot.getId());
+            if (previous != null) {
+                unindex(previous);
+            }
+            byId.put(slot.getId(), slot);
+            byDoctor.computeIfAbsent(slot.getDoctorId(), k -> new TreeMap<>()).put(SlotKey.of(slot), slot);
+        }
+        byId.forEach((id, slot) -> partition(id).slots.put(id, slot));
+        byDoctor.forEach((doctorId, doctorSlots) -> partition(doctorId).slotsByDoctor
+                .computeIfAbsent(doctorId, k -> new ConcurrentSkipListMap<>()).putAll(doctorSlots));
+    }
+
     public Optional<OpdSlot> findById(String id) {
-        return Optional.ofNullable(slots.get(id));
+        return Optional.ofNullable(partition(id).slots.get(id));
     }
 
     public List<OpdSlot> findByDoctorId(String doctorId) {
-        return slots.values().stream()
-                .filter(s -> s.getDoctorId().equals(doctorId))
-                .sorted(Comparator.comparing(OpdSlot::getDate)
-                        .thenComparing(OpdSlot::getStartTime))
-                .collect(Collectors.toList());
+        NavigableMap<SlotKey, OpdSlot> doctorSlots = doctorIndex(doctorId);
+        return doctorSlots == null ? new ArrayList<>() : new ArrayList<>(doctorSlots.values());
+    }
+
+    public List<OpdSlot> findByDoctorAndDate(String doctorId, LocalDate date) {
+        NavigableMap<SlotKey, OpdSlot> doctorSlots = doctorIndex(doctorId);
+        if (doctorSlots == null) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(doctorSlots.subMap(SlotKey.startOf(date), true, SlotKey.endOf(date), true).values());
+    }
+
+    public List<OpdSlot> findByDoctorBefore(String doctorId, LocalDate date) {
+        NavigableMap<SlotKey, OpdSlot> doctorSlots = doctorIndex(doctorId);
+        if (doctorSlots == null) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(doctorSlots.headMap(SlotKey.startOf(date), false).values());
+    }
+
+    public List<OpdSlot> findByDoctorIdAfter(OpdSlot slot) {
+        NavigableMap<SlotKey, OpdSlot> doctorSlots = doctorIndex(slot.getDoctorId());
+        if (doctorSlots == null) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(doctorSlots.tailMap(SlotKey.of(slot), false).values());
     }
 
     public List<OpdSlot> findAll() {
-        return new ArrayList<>(slots.values());
+        List<OpdSlot> all = new ArrayList<>();
+        partitions.forEach(partition -> all.addAll(partition.slots.values()));
+        return all;
     }
 
     public boolean existsById(String id) {
-        return slots.containsKey(id);
+        return partition(id).slots.containsKey(id);
     }
 
     public void deleteById(String id) {
-        slots.remove(id);
+        OpdSlot removed = partition(id).slots.remove(id);
+        if (removed != null) {
+            unindex(removed);
+        }
+    }
+
+    public void reschedule(OpdSlot slot, LocalTime startTime, LocalTime endTime) {
+        unindex(slot);
+        slot.setStartTime(startTime);
+        slot.setEndTime(endTime);
+        if (partition(slot.getId()).slots.containsKey(slot.getId())) {
+            index(slot);
+        }
+    }
+
+    private Partition partition(String id) {
+        return partitions.get(shardOf.applyAsInt(id));
+    }
+
+    private ConcurrentSkipListMap<SlotKey, OpdSlot> doctorIndex(String doctorId) {
+        return partition(doctorId).slotsByDoctor.get(doctorId);
+    }
+
+    private void index(OpdSlot slot) {
+        partition(slot.getDoctorId()).slotsByDoctor
+                .computeIfAbsent(slot.getDoctorId(), k -> new ConcurrentSkipListMap<>())
+                .put(SlotKey.of(slot), slot);
+    }
+
+    private void unindex(OpdSlot slot) {
+        ConcurrentSkipListMap<SlotKey, OpdSlot> doctorSlots = doctorIndex(slot.getDoctorId());
+        if (doctorSlots != null) {
+            doctorSlots.remove(SlotKey.of(slot));
+        }
+    }
+
+    private static final class Partition {
+        private final Map<String, OpdSlot> slots = new ConcurrentHashMap<>();
+        private final Map<String, ConcurrentSkipListMap<SlotKey, OpdSlot>> slotsByDoctor = new ConcurrentHashMap<>();
+    }
+
+    private record SlotKey(LocalDate date, LocalTime startTime, String id) implements Comparable<SlotKey> {
+        private static final Comparator<SlotKey> ORDER = Comparator.comparing(SlotKey::date)
+                .thenComparing(SlotKey::startTime)
+                .thenComparing(SlotKey::id);
+
+        static SlotKey of(OpdSlot slot) {
+            return new SlotKey(slot.getDate(), slot.getStartTime(), slot.getId());
+        }
+
+        static SlotKey startOf(LocalDate date) {
+            return new SlotKey(date, LocalTime.MIN, "");
+        }
+
+        static SlotKey endOf(LocalDate date) {
+            return new SlotKey(date, LocalTime.MAX, "\uffff");
+        }
+
+        @Override
+        public int compareTo(SlotKey other) {
+            return ORDER.compare(this, other);
+        }
     }
 }
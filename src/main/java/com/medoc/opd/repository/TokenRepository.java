@@ -1,28 +1,277 @@
 package com.medoc.opd.repository;
 
+import com.medoc.opd.model.OpdEvent;
 import com.medoc.opd.model.Token;
+import com.medoc.opd.model.TokenStatus;
+import com.medoc.opd.service.EngineShards;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.function.ToIntFunction;
 
+/**
+ * Tokens are partitioned by engine shard: a token, its finished-token row and its patient and status index entries
+ * live in the partition of the token id, and the slot index entry in the partition of the slot id. Both are the
+ * owning doctor's shard for ids minted by {@link EngineShards}, so bookings on different shards share no structure.
+ * Cross-doctor queries (by patient, by status, archiving) merge every partition.
+ */
 @Repository
 public class TokenRepository {
-    private final Map<String, Token> tokens = new ConcurrentHashMap<>();
+    private final ToIntFunction<String> shardOf;
+    private final List<Partition> partitions = new ArrayList<>();
+
+    public TokenRepository() {
+        this(id -> 0, 1);
+    }
+
+    @Autowired
+    public TokenRepository(EngineShards engineShards) {
+        this(engineShards::shardOf, engineShards.shardCount());
+    }
+
+    private TokenRepository(ToIntFunction<String> shardOf, int shardCount) {
+        this.shardOf = shardOf;
+        for (int i = 0; i < shardCount; i++) {
+            partitions.add(new Partition());
+        }
+    }
 
     public Token save(Token token) {
-        tokens.put(token.getId(), token);
+        Partition partition = partition(token.getId());
+        if (isFinished(token.getStatus())) {
+            partition.finished.put(token);
+            partition.tokens.remove(token.getId());
+            unindex(token.getId());
+        } else {
+            partition.tokens.put(token.getId(), token);
+            index(token);
+        }
         return token;
     }
 
     public Optional<Token> findById(String id) {
-        return Optional.ofNullable(tokens.get(id));
+        Partition partition = partition(id);
+        Token token = partition.tokens.get(id);
+        return token != null ? Optional.of(token) : Optional.ofNullable(partition.finished.get(id));
     }
 
     public List<Token> findAll() {
-        return tokens.values().stream().collect(Collectors.toList());
+        List<Token> all = new ArrayList<>();
+        for (Partition partition : partitions) {
+            all.addAll(partition.tokens.values());
+            all.addAll(partition.finished.all());
+        }
+        return all;
+    }
+
+    public List<Token> findByPatientName(String patientName) {
+        String key = patientKey(patientName);
+        List<Token> tokens = new ArrayList<>();
+        if (key == null) {
+            return tokens;
+        }
+        for (Partition partition : partitions) {
+            tokens.addAll(resolve(partition.byPatient.get(key)));
+            tokens.addAll(partition.finished.withPatient(key));
+        }
+        return tokens;
+    }
+
+    /**
+     * Every token assigned to the slot, including the ones it has completed; cancelled tokens are no longer
+     * assigned to any slot.
+     */
+    public List<Token> findBySlotId(String slotId) {
+        List<Token> tokens = resolve(partition(slotId).bySlot.get(slotId));
+        tokens.addAll(findFinishedInSlots(List.of(slotId)));
+        return tokens;
+    }
+
+    public List<Token> findByStatus(TokenStatus status) {
+        List<Token> tokens = new ArrayList<>();
+        for (Partition partition : partitions) {
+            tokens.addAll(isFinished(status)
+                    ? partition.finished.withStatus(status)
+                    : resolve(partition.byStatus.get(status)));
+        }
+        return tokens;
+    }
+
+    public List<Token> findUnassignedFinishedBefore(LocalDateTime cutoff) {
+        List<Token> tokens = new ArrayList<>();
+        partitions.forEach(partition -> tokens.addAll(partition.finished.unassignedCreatedBefore(cutoff)));
+        return tokens;
+    }
+
+    public List<Token> findFinishedInSlots(Collection<String> slotIds) {
+        List<Token> tokens = new ArrayList<>();
+        if (!slotIds.isEmpty()) {
+            partitions.forEach(partition -> tokens.addAll(partition.finished.assignedTo(slotIds)));
+        }
+        return tokens;
+    }
+
+    public void deleteAll(Collection<String> ids) {
+        Map<Partition, List<String>> byPartition = new HashMap<>();
+        for (String id : ids) {
+            Partition partition = partition(id);
+            partition.tokens.remove(id);
+            unindex(id);
+            byPartition.computeIfAbsent(partition, k -> new ArrayList<>()).add(id);
+        }
+        byPartition.forEach((partition, partitionIds) -> partition.finished.removeAll(partitionIds));
+    }
+
+    public int liveCount() {
+        return partitions.stream().mapToInt(partition -> partition.tokens.size()).sum();
+    }
+
+    public int finishedCount() {
+        return partitions.stream().mapToInt(partition -> partition.finished.size()).sum();
+    }
+
+    /**
+     * Runs ahead of every other engine listener so they query indexes that already reflect the event.
+     */
+    @EventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onEvent(OpdEvent event) {
+        if (event.getTokenId() == null) {
+            return;
+        }
+        Token token = partition(event.getTokenId()).tokens.get(event.getTokenId());
+        if (token != null) {
+            index(token);
+        }
+    }
+
+    private Partition partition(String id) {
+        return partitions.get(shardOf.applyAsInt(id));
+    }
+
+    private void index(Token token) {
+        String tokenId = token.getId();
+        Partition partition = partition(tokenId);
+        IndexKey key = new IndexKey(patientKey(token.getPatientName()), token.getStatus(), token.getAssignedSlotId());
+        IndexKey previous = partition.indexed.put(tokenId, key);
+        if (previous == null) {
+            add(partition.byPatient, key.patient(), tokenId);
+            addToSlot(key.slotId(), tokenId);
+            partition.add(key.status(), tokenId);
+            return;
+        }
+        if (!Objects.equals(previous.patient(), key.patient())) {
+            remove(partition.byPatient, previous.patient(), tokenId);
+            add(partition.byPatient, key.patient(), tokenId);
+        }
+        if (!Objects.equals(previous.slotId(), key.slotId())) {
+            removeFromSlot(previous.slotId(), tokenId);
+            addToSlot(key.slotId(), tokenId);
+        }
+        if (previous.status() != key.status()) {
+            partition.remove(previous.status(), tokenId);
+            partition.add(key.status(), tokenId);
+        }
+    }
+
+    private void unindex(String tokenId) {
+        Partition partition = partition(tokenId);
+        IndexKey previous = partition.indexed.remove(tokenId);
+        if (previous != null) {
+            remove(partition.byPatient, previous.patient(), tokenId);
+            removeFromSlot(previous.slotId(), tokenId);
+            partition.remove(previous.status(), tokenId);
+        }
+    }
+
+    private void addToSlot(String slotId, String tokenId) {
+        if (slotId != null) {
+            add(partition(slotId).bySlot, slotId, tokenId);
+        }
+    }
+
+    private void removeFromSlot(String slotId, String tokenId) {
+        if (slotId != null) {
+            remove(partition(slotId).bySlot, slotId, tokenId);
+        }
+    }
+
+    private List<Token> resolve(Set<String> ids) {
+        if (ids == null) {
+            return new ArrayList<>();
+        }
+        List<Token> result = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Token token = partition(id).tokens.get(id);
+            if (token != null) {
+                result.add(token);
+            }
+        }
+        return result;
+    }
+
+    private static void add(Map<String, Set<String>> index, String key, String tokenId) {
+        if (key != null) {
+            index.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(tokenId);
+        }
+    }
+
+    private static void remove(Map<String, Set<String>> index, String key, String tokenId) {
+        if (key != null) {
+            index.computeIfPresent(key, (k, ids) -> ids.remove(tokenId) && ids.isEmpty() ? null : ids);
+        }
+    }
+
+    static String patientKey(String patientName) {
+        return patientName == null ? null : patientName.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean isFinished(TokenStatus status) {
+        return status == TokenStatus.CANCELLED || status == TokenStatus.COMPLETED;
+    }
+
+    private static final class Partition {
+        private final Map<String, Token> tokens = new ConcurrentHashMap<>();
+        private final CompactTokenStore finished = new CompactTokenStore();
+        private final Map<String, IndexKey> indexed = new ConcurrentHashMap<>();
+        private final Map<String, Set<String>> byPatient = new ConcurrentHashMap<>();
+        private final Map<String, Set<String>> bySlot = new ConcurrentHashMap<>();
+        private final Map<TokenStatus, Set<String>> byStatus = new EnumMap<>(TokenStatus.class);
+
+        private Partition() {
+            for (TokenStatus status : TokenStatus.values()) {
+                byStatus.put(status, ConcurrentHashMap.newKeySet());
+            }
+        }
+
+        private void add(TokenStatus status, String tokenId) {
+            if (status != null) {
+                byStatus.get(status).add(tokenId);
+            }
+        }
+
+        private void remove(TokenStatus status, String tokenId) {
+            if (status != null) {
+                byStatus.get(status).remove(tokenId);
+            }
+        }
+    }
+
+    private record IndexKey(String patient, TokenStatus status, String slotId) {
     }
 }
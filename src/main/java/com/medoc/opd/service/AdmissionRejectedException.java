@@ -0,0 +1,14 @@
+package com.medoc.opd.service;
+
+public class AdmissionRejectedException extends RuntimeException {
+    private final int retryAfterSeconds;
+
+    public AdmissionRejectedException(String message, int retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,65 @@
+package com.medoc.opd.service;
+
+import com.medoc.opd.model.OpdSlot;
+import com.medoc.opd.model.Token;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Getter
+public class AllocationPlan {
+    private final List<Step> evictions = new ArrayList<>();
+    private final List<Step> steps = new ArrayList<>();
+    private final List<Token> unplaced = new ArrayList<>();
+    private final List<Token> cancelled = new ArrayList<>();
+    @Getter(AccessLevel.NONE)
+    private final Map<Token, Integer> chainDepths = new IdentityHashMap<>();
+    private int displacements;
+    private int maxChainDepth;
+    private boolean truncated;
+
+    void evict(Token token, OpdSlot slot) {
+        evictions.add(new Step(token, slot, null));
+    }
+
+    void place(Token token, OpdSlot slot) {
+        steps.add(new Step(token, slot, null));
+    }
+
+    void displace(Token resident, OpdSlot slot, Token displacer) {
+        steps.add(new Step(resident, slot, displacer));
+        int depth = depthOf(displacer) + 1;
+        chainDepths.put(resident, depth);
+        maxChainDepth = Math.max(maxChainDepth, depth);
+        displacements++;
+    }
+
+    int depthOf(Token token) {
+        return chainDepths.getOrDefault(token, 0);
+    }
+
+    boolean markTruncated() {
+        boolean first = !truncated;
+        truncated = true;
+        return first;
+    }
+
+    public boolean isPlaced(Token token) {
+        for (Token t : unplaced) {
+            if (t == token) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public record Step(Token token, OpdSlot slot, Token displacedBy) {
+        public boolean isDisplacement() {
+            return displacedBy != null;
+        }
+    }
+}
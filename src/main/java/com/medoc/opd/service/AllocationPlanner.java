@@ -0,0 +1,171 @@
+package com.medoc.opd.service;
+
+import com.medoc.opd.model.OpdSlot;
+import com.medoc.opd.model.SlotQueue;
+import com.medoc.opd.model.Token;
+import com.medoc.opd.model.TokenMove;
+import com.medoc.opd.model.TokenStatus;
+import com.medoc.opd.repository.SlotRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+@Component
+@Slf4j
+public class AllocationPlanner {
+    private final SlotRepository slotRepository;
+    private final int maxDepth;
+
+    public AllocationPlanner(SlotRepository slotRepository,
+                             @Value("${opd.engine.max-bump-depth:64}") int maxDepth) {
+        this.slotRepository = slotRepository;
+        this.maxDepth = maxDepth;
+    }
+
+    public AllocationPlan planBooking(Collection<Token> incoming, List<OpdSlot> daySlots) {
+        AllocationPlan plan = new AllocationPlan();
+        Set<Token> newTokens = Collections.newSetFromMap(new IdentityHashMap<>());
+        newTokens.addAll(incoming);
+        PriorityQueue<Token> carry = new PriorityQueue<>(incoming);
+
+        walk(daySlots, carry, plan);
+
+        List<Token> displaced = new ArrayList<>();
+        while (!carry.isEmpty()) {
+            Token token = carry.poll();
+            if (newTokens.contains(token)) {
+                plan.getUnplaced().add(token);
+            } else {
+                displaced.add(token);
+            }
+        }
+
+        if (!displaced.isEmpty()) {
+            carry.addAll(displaced);
+            walk(slotRepository.findByDoctorIdAfter(daySlots.get(daySlots.size() - 1)), carry, plan);
+            plan.getCancelled().addAll(carry);
+        }
+        return plan;
+    }
+
+    public AllocationPlan planCapacityCut(OpdSlot slot, int capacity) {
+        List<Token> overflow = new ArrayList<>();
+        Iterator<Token> lowest = slot.getQueue().activeFromLowest();
+        for (int excess = slot.getQueue().occupiedCount() - capacity; excess > 0 && lowest.hasNext(); excess--) {
+            overflow.add(lowest.next());
+        }
+        return planEviction(slot, overflow, slotRepository.findByDoctorIdAfter(slot));
+    }
+
+    public AllocationPlan planEviction(OpdSlot slot, Collection<Token> evicted, List<OpdSlot> targets) {
+        AllocationPlan plan = new AllocationPlan();
+        for (Token token : evicted) {
+            plan.evict(token, slot);
+        }
+        PriorityQueue<Token> carry = new PriorityQueue<>(evicted);
+        walk(targets, carry, plan);
+        plan.getCancelled().addAll(carry);
+        return plan;
+    }
+
+    public List<TokenMove> apply(AllocationPlan plan) {
+        Map<Token, String> origins = new IdentityHashMap<>();
+        List<Token> touched = new ArrayList<>();
+        for (AllocationPlan.Step step : plan.getEvictions()) {
+            Token token = step.token();
+            origins.put(token, token.getAssignedSlotId());
+            touched.add(token);
+            log.info("Capacity Crunch: Pushing token {} (Source: {}) out of slot {}",
+                    token.getPatientName(), token.getSource(), step.slot().getId());
+            step.slot().getQueue().remove(token.getId());
+        }
+        for (AllocationPlan.Step step : plan.getSteps()) {
+            Token token = step.token();
+            if (!origins.containsKey(token)) {
+                origins.put(token, token.getAssignedSlotId());
+                touched.add(token);
+            }
+            SlotQueue queue = step.slot().getQueue();
+            if (step.isDisplacement()) {
+                log.info("Reallocation: Bumping token {} (Source: {}) to make room for {} (Source: {})",
+                        token.getId(), token.getSource(), step.displacedBy().getId(), step.displacedBy().getSource());
+                queue.remove(token.getId());
+            } else {
+                queue.add(token);
+                token.setAssignedSlotId(step.slot().getId());
+            }
+        }
+
+        for (Token token : plan.getCancelled()) {
+            if (!origins.containsKey(token)) {
+                origins.put(token, token.getAssignedSlotId());
+                touched.add(token);
+            }
+            token.setStatus(TokenStatus.CANCELLED);
+            token.setAssignedSlotId(null);
+            log.warn("Bumped token {} could not be reallocated. Marking CANCELLED.", token.getId());
+        }
+
+        List<TokenMove> moves = new ArrayList<>();
+        for (Token token : touched) {
+            String from = origins.get(token);
+            if (from != null && !from.equals(token.getAssignedSlotId())) {
+                moves.add(new TokenMove(token.getId(), from, token.getAssignedSlotId()));
+            }
+        }
+        return moves;
+    }
+
+    private void walk(List<OpdSlot> slots, PriorityQueue<Token> carry, AllocationPlan plan) {
+        List<Token> exhausted = new ArrayList<>();
+        for (OpdSlot slot : slots) {
+            if (carry.isEmpty()) {
+                break;
+            }
+            SlotQueue queue = slot.getQueue();
+            int free = slot.getMaxCapacity() - queue.occupiedCount();
+            Iterator<Token> residents = queue.activeFromLowest();
+            Token lowest = null;
+            while (!carry.isEmpty()) {
+                if (free > 0) {
+                    plan.place(carry.poll(), slot);
+                    free--;
+                    continue;
+                }
+                if (lowest == null) {
+                    if (!residents.hasNext()) {
+                        break;
+                    }
+                    lowest = residents.next();
+                }
+                if (carry.peek().compareTo(lowest) >= 0) {
+                    break;
+                }
+                if (plan.depthOf(carry.peek()) >= maxDepth) {
+                    if (plan.markTruncated()) {
+                        log.warn("Bump chain reached max depth {}; its tail only takes free capacity", maxDepth);
+                    }
+                    exhausted.add(carry.poll());
+                    continue;
+                }
+                Token incoming = carry.poll();
+                plan.displace(lowest, slot, incoming);
+                plan.place(incoming, slot);
+                carry.add(lowest);
+                lowest = null;
+            }
+            carry.addAll(exhausted);
+            exhausted.clear();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.medoc.opd.service;
+
+import com.medoc.opd.model.OpdEvent;
+import com.medoc.opd.model.OpdSlot;
+import com.medoc.opd.model.Token;
+import com.medoc.opd.repository.SlotRepository;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Service
+public class BackfillIndex {
+    private final SlotRepository slotRepository;
+    private final Map<String, DayTree> days = new ConcurrentHashMap<>();
+
+    public BackfillIndex(SlotRepository slotRepository) {
+        this.slotRepository = slotRepository;
+    }
+
+    public int positionOf(OpdSlot slot) {
+        return dayOf(slot).positions.getOrDefault(slot.getId(), -1);
+    }
+
+    public OpdSlot bestDonorAfter(OpdSlot slot) {
+        DayTree day = dayOf(slot);
+        Integer position = day.positions.get(slot.getId());
+        int donor = position == null ? -1 : day.best(position + 1);
+        return donor < 0 ? null : day.slots.get(donor);
+    }
+
+    @EventListener
+    public void onEvent(OpdEvent event) {
+        switch (event.getType()) {
+            case SLOT_CREATED, SLOT_DELAYED, SLOT_DELETED, SLOT_ARCHIVED ->
+                    days.remove(key(event.getDoctorId(), event.getDate()));
+            default -> {
+                update(event.getSlotId());
+                update(event.getFromSlotId());
+            }
+        }
+    }
+
+    private void update(String slotId) {
+        if (slotId == null) {
+            return;
+        }
+        slotRepository.findById(slotId).ifPresent(slot -> {
+            DayTree day = days.get(key(slot.getDoctorId(), slot.getDate()));
+            if (day != null) {
+                day.refresh(slot);
+            }
+        });
+    }
+
+    private DayTree dayOf(OpdSlot slot) {
+        return days.computeIfAbsent(key(slot.getDoctorId(), slot.getDate()),
+                k -> new DayTree(slotRepository.findByDoctorAndDate(slot.getDoctorId(), slot.getDate())));
+    }
+
+    private static String key(String doctorId, LocalDate date) {
+        return doctorId + '|' + date;
+    }
+
+    private static long bestKey(OpdSlot slot) {
+        Token best = slot.getQueue().peekHighestActive();
+        return best == null ? Long.MAX_VALUE : best.getSortKey();
+    }
+
+    private static final class DayTree {
+        private final List<OpdSlot> slots;
+        private final Map<String, Integer> positions = new HashMap<>();
+        private final long[] keys;
+        private final int[] tree;
+        private final int size;
+
+        private DayTree(List<OpdSlot> slots) {
+            this.slots = slots;
+            this.size = slots.size();
+            this.keys = new long[size];
+            this.tree = new int[2 * Math.max(size, 1)];
+            for (int i = 0; i < size; i++) {
+                positions.put(slots.get(i).getId(), i);
+                keys[i] = bestKey(slots.get(i));
+                tree[size + i] = i;
+            }
+            for (int node = size - 1; node > 0; node--) {
+                tree[node] = better(tree[2 * node], tree[2 * node + 1]);
+            }
+        }
+
+        private void refresh(OpdSlot slot) {
+            Integer position = positions.get(slot.getId());
+            if (position == null) {
+                return;
+            }
+            keys[position] = bestKey(slot);
+            for (int node = (position + size) / 2; node > 0; node /= 2) {
+                tree[node] = better(tree[2 * node], tree[2 * node + 1]);
+            }
+        }
+
+        private int best(int from) {
+            int result = -1;
+            for (int lo = from + size, hi = 2 * size; lo < hi; lo /= 2, hi /= 2) {
+                if ((lo & 1) == 1) {
+                    result = better(result, tree[lo++]);
+                }
+                if ((hi & 1) == 1) {
+                    result = better(result, tree[--hi]);
+                }
+            }
+            return result >= 0 && keys[result] != Long.MAX_VALUE ? result : -1;
+        }
+
+        private int better(int a, int b) {
+            if (a < 0) {
+                return b;
+            }
+            if (b < 0) {
+                return a;
+            }
+            return keys[b] < keys[a] || (keys[b] == keys[a] && b < a) ? b : a;
+        }
+    }
+}
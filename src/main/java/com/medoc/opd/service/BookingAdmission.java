@@ -0,0 +1,248 @@
+package com.medoc.opd.service;
+
+import com.medoc.opd.model.TokenSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounds how many bookings run in the engine at once. Every source draws on the shared permits first; EMERGENCY and
+ * PAID_PREMIUM may also fall back to a reserved share the other sources never touch. When nothing is free a request
+ * waits in its source's lane, and freed permits go to the most urgent waiting lane first, FIFO within a lane. Lanes
+ * are bounded in depth and wait time, and a request that overflows either is shed with a Retry-After hint. EMERGENCY
+ * is never shed: if no permit is free it is admitted over the limit.
+ */
+@Component
+@Slf4j
+public class BookingAdmission {
+    private final boolean enabled;
+    private final int sharedLimit;
+    private final int reservedLimit;
+    private final Lane[] lanes;
+    private final Lane[] byPriority;
+    private final int queueDepth;
+    private final long queueTimeoutNanos;
+    private final int retryAfterSeconds;
+    private final Counter overdraft;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private int sharedInUse;
+    private int reservedInUse;
+
+    public BookingAdmission(MeterRegistry registry,
+                            @Value("${opd.admission.enabled:true}") boolean enabled,
+                            @Value("${opd.admission.max-concurrent:64}") int maxConcurrent,
+                            @Value("${opd.admission.reserved-percent:25}") int reservedPercent,
+                            @Value("${opd.admission.queue-depth:200}") int queueDepth,
+                            @Value("${opd.admission.queue-timeout-ms:250}") long queueTimeoutMillis,
+                            @Value("${opd.admission.retry-after-seconds:1}") int retryAfterSeconds) {
+        if (maxConcurrent < 2 || reservedPercent <= 0 || reservedPercent >= 100) {
+            throw new IllegalArgumentException(
+                    "opd.admission.max-concurrent must be at least 2 and reserved-percent between 1 and 99");
+        }
+        this.enabled = enabled;
+        this.reservedLimit = Math.max(1, maxConcurrent * reservedPercent / 100);
+        this.sharedLimit = maxConcurrent - reservedLimit;
+        this.queueDepth = queueDepth;
+        this.queueTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(queueTimeoutMillis);
+        this.retryAfterSeconds = retryAfterSeconds;
+
+        TokenSource[] sources = TokenSource.values();
+        this.lanes = new Lane[sources.length];
+        for (TokenSource source : sources) {
+            Lane lane = new Lane(source, Counter.builder("opd.admission.shed")
+                    .tag("source", source.name())
+                    .register(registry));
+            Gauge.builder("opd.admission.queue.depth", lane.waiting, AtomicInteger::get)
+                    .tag("source", source.name())
+                    .register(registry);
+            lanes[source.ordinal()] = lane;
+        }
+        this.byPriority = Arrays.stream(lanes)
+                .sorted(Comparator.comparingInt(lane -> lane.source.getPriorityLevel()))
+                .toArray(Lane[]::new);
+        this.overdraft = Counter.builder("opd.admission.overdraft")
+                .tag("source", TokenSource.EMERGENCY.name())
+                .register(registry);
+        Gauge.builder("opd.admission.permits.available", this, a -> a.available(Pool.SHARED))
+                .tag("pool", "shared")
+                .register(registry);
+        Gauge.builder("opd.admission.permits.available", this, a -> a.available(Pool.RESERVED))
+                .tag("pool", "reserved")
+                .register(registry);
+    }
+
+    public Permit admit(TokenSource source) {
+        if (!enabled) {
+            return new Permit(Pool.NONE);
+        }
+        Lane lane = lanes[(source == null ? TokenSource.WALK_IN : source).ordinal()];
+        lock.lock();
+        try {
+            if (!queuedAtOrAbove(lane)) {
+                Pool pool = take(lane);
+                if (pool != null) {
+                    return new Permit(pool);
+                }
+            }
+            if (lane.source == TokenSource.EMERGENCY) {
+                overdraft.increment();
+                return new Permit(Pool.NONE);
+            }
+            if (lane.queue.size() >= queueDepth) {
+                throw shed(lane, "queue is full");
+            }
+            return new Permit(await(lane));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Pool await(Lane lane) {
+        Waiter waiter = new Waiter(lock.newCondition());
+        lane.queue.addLast(waiter);
+        lane.waiting.incrementAndGet();
+        long remaining = queueTimeoutNanos;
+        try {
+            while (waiter.pool == null) {
+                if (remaining <= 0) {
+                    throw shed(lane, "timed out waiting for capacity");
+                }
+                remaining = waiter.granted.awaitNanos(remaining);
+            }
+            return waiter.pool;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (waiter.pool != null) {
+                release(waiter.pool);
+            }
+            throw shed(lane, "interrupted while queued");
+        } finally {
+            if (lane.queue.remove(waiter)) {
+                lane.waiting.decrementAndGet();
+            }
+        }
+    }
+
+    private boolean queuedAtOrAbove(Lane lane) {
+        for (Lane other : byPriority) {
+            if (!other.queue.isEmpty()) {
+                return true;
+            }
+            if (other == lane) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private Pool take(Lane lane) {
+        if (sharedInUse < sharedLimit) {
+            sharedInUse++;
+            return Pool.SHARED;
+        }
+        if (lane.reserved && reservedInUse < reservedLimit) {
+            reservedInUse++;
+            return Pool.RESERVED;
+        }
+        return null;
+    }
+
+    private void release(Pool pool) {
+        lock.lock();
+        try {
+            if (pool == Pool.SHARED) {
+                sharedInUse--;
+            } else if (pool == Pool.RESERVED) {
+                reservedInUse--;
+            }
+            for (Lane lane : byPriority) {
+                while (!lane.queue.isEmpty()) {
+                    Pool granted = take(lane);
+                    if (granted == null) {
+                        break;
+                    }
+                    Waiter waiter = lane.queue.pollFirst();
+                    lane.waiting.decrementAndGet();
+                    waiter.pool = granted;
+                    waiter.granted.signal();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int available(Pool pool) {
+        lock.lock();
+        try {
+            return pool == Pool.SHARED ? sharedLimit - sharedInUse : reservedLimit - reservedInUse;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private AdmissionRejectedException shed(Lane lane, String reason) {
+        lane.shed.increment();
+        log.debug("Shedding {} booking: {}", lane.source, reason);
+        return new AdmissionRejectedException("Booking service is busy for " + lane.source
+                + " requests. Please retry shortly.", retryAfterSeconds);
+    }
+
+    public final class Permit implements AutoCloseable {
+        private final Pool pool;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(Pool pool) {
+            this.pool = pool;
+        }
+
+        @Override
+        public void close() {
+            if (pool != Pool.NONE && released.compareAndSet(false, true)) {
+                release(pool);
+            }
+        }
+    }
+
+    private enum Pool {
+        SHARED,
+        RESERVED,
+        NONE
+    }
+
+    private static final class Waiter {
+        private final Condition granted;
+        private Pool pool;
+
+        private Waiter(Condition granted) {
+            this.granted = granted;
+        }
+    }
+
+    private static final class Lane {
+        private final TokenSource source;
+        private final boolean reserved;
+        private final Counter shed;
+        private final ArrayDeque<Waiter> queue = new ArrayDeque<>();
+        private final AtomicInteger waiting = new AtomicInteger();
+
+        private Lane(TokenSource source, Counter shed) {
+            this.source = source;
+            this.reserved = source == TokenSource.EMERGENCY || source == TokenSource.PAID_PREMIUM;
+            this.shed = shed;
+        }
+    }
+}
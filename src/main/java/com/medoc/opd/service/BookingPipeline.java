@@ -0,0 +1,97 @@
+package com.medoc.opd.service;
+
+import com.medoc.opd.model.BookingItem;
+import com.medoc.opd.model.BookingResult;
+import com.medoc.opd.model.Token;
+import com.medoc.opd.model.TokenSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * With {@code opd.booking.async=true}, single-doctor bookings run on the single-threaded executor of the doctor's
+ * engine shard ({@link EngineShards#executorFor}), which keeps each doctor's bookings FIFO and frees the servlet
+ * thread. The executor belongs to the shard, not the doctor: every doctor dealt to a shard shares one thread and
+ * one bounded queue, so a burst for one doctor delays the others on that shard (head-of-line blocking) and can
+ * fill the queue for all of them. The result is completed only after the booking's journal batch is durable,
+ * without holding the shard thread while waiting.
+ */
+@Service
+@Slf4j
+public class BookingPipeline {
+    private final OpdService opdService;
+    private final EngineShards engineShards;
+    private final BookingAdmission bookingAdmission;
+    private final CommitBarrier commitBarrier;
+    private final boolean async;
+
+    public BookingPipeline(OpdService opdService, EngineShards engineShards, BookingAdmission bookingAdmission,
+                           CommitBarrier commitBarrier, @Value("${opd.booking.async:false}") boolean async) {
+        this.opdService = opdService;
+        this.engineShards = engineShards;
+        this.bookingAdmission = bookingAdmission;
+        this.commitBarrier = commitBarrier;
+        this.async = async;
+    }
+
+    public CompletableFuture<Token> book(String patientName, TokenSource source, String doctorId, LocalDate date) {
+        if (doctorId == null) {
+            throw new RuntimeException("Doctor ID not found");
+        }
+        BookingAdmission.Permit permit = bookingAdmission.admit(source);
+        if (!async) {
+            try (permit) {
+                return CompletableFuture.completedFuture(opdService.bookToken(patientName, source, doctorId, date));
+            }
+        }
+
+        CompletableFuture<Token> result = new CompletableFuture<>();
+        try {
+            engineShards.executorFor(doctorId).execute(() -> {
+                try (permit) {
+                    commitBarrier.deferring(() -> opdService.bookToken(patientName, source, doctorId, date))
+                            .whenComplete((token, failure) -> {
+                                if (failure == null) {
+                                    result.complete(token);
+                                } else {
+                                    result.completeExceptionally(failure instanceof CompletionException
+                                            ? failure.getCause() : failure);
+                                }
+                            });
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permit.close();
+            log.warn("Booking queue for doctor {} is full", doctorId);
+            throw new RuntimeException("Booking queue is full. Please try again later.");
+        }
+        return result;
+    }
+
+    public Token bookEarliest(String patientName, TokenSource source, String specialization, LocalDate date) {
+        try (BookingAdmission.Permit permit = bookingAdmission.admit(source)) {
+            return opdService.bookEarliest(patientName, source, specialization, date);
+        }
+    }
+
+    public List<BookingResult> bookBatch(List<BookingItem> items) {
+        TokenSource mostUrgent = items.stream()
+                .map(BookingItem::getSource)
+                .filter(Objects::nonNull)
+                .min(Comparator.comparingInt(TokenSource::getPriorityLevel))
+                .orElse(null);
+        try (BookingAdmission.Permit permit = bookingAdmission.admit(mostUrgent)) {
+            return opdService.bookTokens(items);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.medoc.opd.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Holds, per thread, the journal batch that covers the mutations the thread has made under the engine locks.
+ * {@link EngineShards} waits on it once the thread has released its last shard lock, so a mutation is acknowledged
+ * only after the batch holding its records has been forced to disk, and the wait never holds up the shard.
+ * Callers that hand the acknowledgement to another thread {@link #deferring(Supplier) defer}
+ * the wait and compose with the batch instead.
+ */
+@Component
+public class CommitBarrier {
+    private static final CompletableFuture<Void> COMMITTED = CompletableFuture.completedFuture(null);
+
+    private final ThreadLocal<CompletableFuture<Void>> pending = new ThreadLocal<>();
+    private final ThreadLocal<Boolean> deferred = ThreadLocal.withInitial(() -> false);
+    private volatile boolean readOnly;
+
+    /**
+     * Records that the calling thread's latest mutation is durable once {@code batch} completes. Batches complete in
+     * order, so the latest one covers every earlier mutation; a failed batch is kept so the failure is not lost.
+     */
+    public void register(CompletableFuture<Void> batch) {
+        CompletableFuture<Void> current = pending.get();
+        if (current == null || !current.isCompletedExceptionally()) {
+            pending.set(batch);
+        }
+    }
+
+    public void markReadOnly() {
+        readOnly = true;
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    void awaitPending() {
+        if (deferred.get()) {
+            return;
+        }
+        CompletableFuture<Void> batch = pending.get();
+        if (batch == null) {
+            return;
+        }
+        pending.remove();
+        try {
+            batch.join();
+        } catch (CompletionException e) {
+            throw new EngineReadOnlyException(e.getCause());
+        }
+    }
+
+    /**
+     * Runs {@code action} without waiting for its journal batch, and returns the batch that has to complete before
+     * the result may be acknowledged.
+     */
+    public <T> CompletableFuture<T> deferring(Supplier<T> action) {
+        deferred.set(true);
+        T result;
+        CompletableFuture<Void> batch;
+        try {
+            result = action.get();
+        } finally {
+            deferred.set(false);
+            batch = pending.get();
+            pending.remove();
+        }
+        return (batch == null ? COMMITTED : batch).handle((ignored, failure) -> {
+            if (failure != null) {
+                throw new EngineReadOnlyException(failure instanceof CompletionException ? failure.getCause() : failure);
+            }
+            return result;
+        });
+    }
+}
@@ -0,0 +1,159 @@
+package com.medoc.opd.service;
+
+import com.medoc.opd.model.OpdEvent;
+import com.medoc.opd.model.OpdSlot;
+import com.medoc.opd.model.TokenSource;
+import com.medoc.opd.repository.DoctorRepository;
+import com.medoc.opd.repository.SlotRepository;
+import com.medoc.opd.repository.TokenRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+@Component
+public class EngineMetrics {
+    public enum Operation {
+        BOOK, BATCH_BOOK, BOOK_EARLIEST, CANCEL, NO_SHOW, COMPLETE, RESIZE, DELAY, DELETE
+    }
+
+    private final MeterRegistry registry;
+    private final SlotRepository slotRepository;
+    private final DoctorRepository doctorRepository;
+    private final Timer[] timers;
+    private final Counter[] rejections;
+    private final Counter emergencyOverbooks;
+    private final DistributionSummary cascadeDepth;
+    private final DistributionSummary displacements;
+    private final EngineShards engineShards;
+    private final Set<String> gaugedDoctors = ConcurrentHashMap.newKeySet();
+    private final Map<String, Utilisation> utilisation = new ConcurrentHashMap<>();
+
+    public EngineMetrics(MeterRegistry registry, SlotRepository slotRepository, DoctorRepository doctorRepository,
+                         TokenRepository tokenRepository, EngineShards engineShards) {
+        this.registry = registry;
+        this.slotRepository = slotRepository;
+        this.doctorRepository = doctorRepository;
+        this.engineShards = engineShards;
+
+        Operation[] operations = Operation.values();
+        this.timers = new Timer[operations.length];
+        for (Operation operation : operations) {
+            timers[operation.ordinal()] = Timer.builder("opd.engine.operation")
+                    .tag("operation", operation.name().toLowerCase(Locale.ROOT))
+                    .publishPercentileHistogram()
+                    .register(registry);
+        }
+
+        TokenSource[] sources = TokenSource.values();
+        this.rejections = new Counter[sources.length];
+        for (TokenSource source : sources) {
+            rejections[source.ordinal()] = Counter.builder("opd.engine.bookings.rejected")
+                    .tag("source", source.name())
+                    .register(registry);
+        }
+
+        this.emergencyOverbooks = Counter.builder("opd.engine.emergency.overbooks").register(registry);
+        Gauge.builder("opd.engine.tokens", tokenRepository, TokenRepository::liveCount)
+                .tag("state", "live")
+                .register(registry);
+        Gauge.builder("opd.engine.tokens", tokenRepository, TokenRepository::finishedCount)
+                .tag("state", "finished")
+                .register(registry);
+        this.cascadeDepth = DistributionSummary.builder("opd.engine.bump.cascade.depth")
+                .description("Longest chain of bumps one allocation caused")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.displacements = DistributionSummary.builder("opd.engine.bump.displacements")
+                .description("Tokens bumped by one allocation")
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    public void record(Operation operation, long startNanos) {
+        timers[operation.ordinal()].record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordCascade(int maxChainDepth, int displacementCount) {
+        cascadeDepth.record(maxChainDepth);
+        displacements.record(displacementCount);
+    }
+
+    public void recordRejection(TokenSource source) {
+        rejections[source.ordinal()].increment();
+    }
+
+    public void recordEmergencyOverbook() {
+        emergencyOverbooks.increment();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void registerExistingDoctors() {
+        doctorRepository.findAll().forEach(doctor -> registerUtilisation(doctor.getId()));
+    }
+
+    /**
+     * Engine events are published under the doctor's shard lock, so today's figure is recomputed here and the gauge
+     * only reads the stored value instead of walking live slot queues from the scrape thread.
+     */
+    @EventListener
+    public void onEvent(OpdEvent event) {
+        String doctorId = event.getDoctorId();
+        if (doctorId == null) {
+            return;
+        }
+        if (!gaugedDoctors.contains(doctorId)) {
+            registerUtilisation(doctorId);
+        }
+        utilisation.put(doctorId, measure(doctorId, LocalDate.now()));
+    }
+
+    private void registerUtilisation(String doctorId) {
+        if (gaugedDoctors.add(doctorId)) {
+            Gauge.builder("opd.doctor.slot.utilisation", doctorId, this::todayUtilisation)
+                    .tag("doctor", doctorId)
+                    .register(registry);
+        }
+    }
+
+    private double todayUtilisation(String doctorId) {
+        LocalDate today = LocalDate.now();
+        Utilisation current = utilisation.get(doctorId);
+        if (current == null || !current.day().equals(today)) {
+            Lock lock = engineShards.lockFor(doctorId);
+            lock.lock();
+            try {
+                current = measure(doctorId, today);
+                utilisation.put(doctorId, current);
+            } finally {
+                lock.unlock();
+            }
+        }
+        return current.ratio();
+    }
+
+    private Utilisation measure(String doctorId, LocalDate day) {
+        long active = 0;
+        long capacity = 0;
+        for (OpdSlot slot : slotRepository.findByDoctorAndDate(doctorId, day)) {
+            active += slot.getQueue().activeCount();
+            capacity += slot.getMaxCapacity();
+        }
+        return new Utilisation(day, capacity == 0 ? 0 : (double) active / capacity);
+    }
+
+    private record Utilisation(LocalDate day, double ratio) {
+    }
+}
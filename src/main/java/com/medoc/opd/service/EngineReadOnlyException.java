@@ -0,0 +1,7 @@
+package com.medoc.opd.service;
+
+public class EngineReadOnlyException extends RuntimeException {
+    public EngineReadOnlyException(Throwable cause) {
+        super("The engine could not persist the change and is read-only until restarted.", cause);
+    }
+}
@@ -0,0 +1,203 @@
+package com.medoc.opd.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Splits the engine into shards that each own a disjoint set of doctors, together with those doctors' slots and
+ * tokens, a lock and a single-threaded executor. Doctors are dealt to shards round-robin, and every id is minted in
+ * the lane of the shard that owns it, so any doctor, slot or token id routes to its shard without a shared directory.
+ * Ids that did not come from the generator (fixtures, older data) fall back to a hash.
+ * <p>
+ * A thread that releases the last shard lock it holds waits there for the {@link CommitBarrier journal batch}
+ * covering its mutations, so the wait for the disk happens after the shard is free for the next caller.
+ */
+@Component
+public class EngineShards {
+    private static final int MAX_DEFAULT_SHARDS = 256;
+
+    private final Shard[] shards;
+    private final int queueCapacity;
+    private final IdGenerator idGenerator;
+    private final CommitBarrier commitBarrier;
+    private final ThreadLocal<int[]> heldLocks = ThreadLocal.withInitial(() -> new int[1]);
+    private final AtomicInteger nextDoctorShard = new AtomicInteger();
+
+    public EngineShards(IdGenerator idGenerator, CommitBarrier commitBarrier,
+                        @Value("${opd.engine.shards:0}") int shardCount,
+                        @Value("${opd.engine.shard-queue-capacity:10000}") int queueCapacity) {
+        int count = resolveCount(shardCount);
+        if (idGenerator.lanes() < count) {
+            throw new IllegalStateException("Id generator has " + idGenerator.lanes() + " lanes for " + count
+                    + " engine shards");
+        }
+        this.idGenerator = idGenerator;
+        this.commitBarrier = commitBarrier;
+        this.shards = new Shard[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = new Shard(i);
+        }
+        this.queueCapacity = queueCapacity;
+    }
+
+    static int resolveCount(int shardCount) {
+        if (shardCount < 0) {
+            throw new IllegalArgumentException("opd.engine.shards must not be negative");
+        }
+        return shardCount > 0 ? shardCount
+                : Math.min(MAX_DEFAULT_SHARDS, 4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    public int shardCount() {
+        return shards.length;
+    }
+
+    public int shardOf(String id) {
+        long key = decode(id);
+        if (key >= 0) {
+            return idGenerator.laneOf(key) % shards.length;
+        }
+        int h = id.hashCode();
+        h ^= (h >>> 16);
+        return Math.floorMod(h, shards.length);
+    }
+
+    public String newDoctorKey() {
+        return idGenerator.nextKey(Math.floorMod(nextDoctorShard.getAndIncrement(), shards.length));
+    }
+
+    /**
+     * A fresh id owned by the same shard as {@code doctorId}, for the doctor's slots, tokens and templates.
+     */
+    public String newKeyFor(String doctorId) {
+        return idGenerator.nextKey(shardOf(doctorId));
+    }
+
+    public Lock lockFor(String doctorId) {
+        return shards[shardOf(doctorId)].lock;
+    }
+
+    public Lock lock(int shard) {
+        return shards[shard].lock;
+    }
+
+    public ExecutorService executorFor(String doctorId) {
+        return shards[shardOf(doctorId)].executor();
+    }
+
+    public void lockAll() {
+        for (Shard shard : shards) {
+            shard.lock.lock();
+        }
+    }
+
+    public void unlockAll() {
+        for (int i = shards.length - 1; i >= 0; i--) {
+            shards[i].lock.unlock();
+        }
+    }
+
+    private static long decode(String id) {
+        int length = id.length();
+        if (length == 0 || length > 13) {
+            return -1;
+        }
+        long key = 0;
+        for (int i = 0; i < length; i++) {
+            int digit = Character.digit(id.charAt(i), Character.MAX_RADIX);
+            if (digit < 0 || key > (Long.MAX_VALUE - digit) / Character.MAX_RADIX) {
+                return -1;
+            }
+            key = key * Character.MAX_RADIX + digit;
+        }
+        return key;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Shard shard : shards) {
+            ExecutorService executor = shard.executor;
+            if (executor != null) {
+                executor.shutdown();
+            }
+        }
+    }
+
+    private final class Shard {
+        private final int index;
+        private final Lock lock = new ShardLock();
+        private volatile ExecutorService executor;
+
+        private Shard(int index) {
+            this.index = index;
+        }
+
+        private ExecutorService executor() {
+            ExecutorService current = executor;
+            if (current == null) {
+                synchronized (this) {
+                    current = executor;
+                    if (current == null) {
+                        current = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                                new LinkedBlockingQueue<>(queueCapacity), r -> {
+                                    Thread thread = new Thread(r, "opd-shard-" + index);
+                                    thread.setDaemon(true);
+                                    return thread;
+                                });
+                        executor = current;
+                    }
+                }
+            }
+            return current;
+        }
+    }
+
+    private final class ShardLock extends ReentrantLock {
+        @Override
+        public void lock() {
+            super.lock();
+            heldLocks.get()[0]++;
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            super.lockInterruptibly();
+            heldLocks.get()[0]++;
+        }
+
+        @Override
+        public boolean tryLock() {
+            if (!super.tryLock()) {
+                return false;
+            }
+            heldLocks.get()[0]++;
+            return true;
+        }
+
+        @Override
+        public boolean tryLock(long timeout, TimeUnit unit) throws InterruptedException {
+            if (!super.tryLock(timeout, unit)) {
+                return false;
+            }
+            heldLocks.get()[0]++;
+            return true;
+        }
+
+        @Override
+        public void unlock() {
+            super.unlock();
+            if (--heldLocks.get()[0] == 0) {
+                commitBarrier.awaitPending();
+            }
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.medoc.opd.service;
+
+import com.medoc.opd.model.Doctor;
+import com.medoc.opd.model.OpdEvent;
+import com.medoc.opd.model.OpdEventType;
+import com.medoc.opd.model.OpdSlot;
+import com.medoc.opd.model.Token;
+import com.medoc.opd.model.TokenStatus;
+import com.medoc.opd.repository.DoctorRepository;
+import com.medoc.opd.repository.SlotRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+
+@Service
+public class EtaService {
+    private final DoctorRepository doctorRepository;
+    private final SlotRepository slotRepository;
+    private final EngineShards engineShards;
+    private final double defaultConsultSeconds;
+    private final double smoothing;
+    private final long maxGapSeconds;
+    private final Map<String, Position> positions = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> tokensBySlot = new ConcurrentHashMap<>();
+    private final Map<String, ConsultClock> clocks = new ConcurrentHashMap<>();
+
+    public EtaService(DoctorRepository doctorRepository, SlotRepository slotRepository, EngineShards engineShards,
+                      @Value("${opd.eta.default-consult-minutes:10}") double defaultConsultMinutes,
+                      @Value("${opd.eta.smoothing:0.2}") double smoothing,
+                      @Value("${opd.eta.max-gap-minutes:60}") long maxGapMinutes) {
+        this.doctorRepository = doctorRepository;
+        this.slotRepository = slotRepository;
+        this.engineShards = engineShards;
+        this.defaultConsultSeconds = defaultConsultMinutes * 60;
+        this.smoothing = smoothing;
+        this.maxGapSeconds = maxGapMinutes * 60;
+    }
+
+    /**
+     * The doctor sees patients still waiting in earlier slots of the same day first, so their backlog is worked
+     * off from the earliest of those slots (or now) before this slot's own queue starts.
+     */
+    public TokenEta etaFor(String tokenId) {
+        Position position = positions.get(tokenId);
+        if (position == null) {
+            throw new RuntimeException("Token is not waiting in any slot");
+        }
+        ConsultClock clock = clocks.get(position.doctorId());
+        double consultSeconds = clock == null ? defaultConsultSeconds : clock.averageSeconds;
+        LocalDateTime now = LocalDateTime.now();
+
+        int backlog = 0;
+        LocalDateTime backlogStart = null;
+        Lock lock = engineShards.lockFor(position.doctorId());
+        lock.lock();
+        try {
+            for (OpdSlot slot : slotRepository.findByDoctorAndDate(position.doctorId(),
+                    position.slotStart().toLocalDate())) {
+                LocalDateTime start = slot.getDate().atTime(slot.getStartTime());
+                int waiting = slot.getQueue().activeCount();
+                if (start.isBefore(position.slotStart()) && waiting > 0) {
+                    backlog += waiting;
+                    backlogStart = backlogStart == null || start.isBefore(backlogStart) ? start : backlogStart;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        LocalDateTime from = latest(position.slotStart(), now);
+        if (backlog > 0) {
+            LocalDateTime backlogCleared = latest(backlogStart, now)
+                    .plusSeconds(Math.round(backlog * consultSeconds));
+            from = latest(from, backlogCleared);
+        }
+        Duration wait = Duration.ofSeconds(Math.round(position.ahead() * consultSeconds));
+        return new TokenEta(tokenId, position.slotId(), backlog + position.ahead(), from.plus(wait),
+                Math.round(consultSeconds / 6) / 10.0);
+    }
+
+    private static LocalDateTime latest(LocalDateTime a, LocalDateTime b) {
+        return a.isAfter(b) ? a : b;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        engineShards.lockAll();
+        try {
+            for (Doctor doctor : doctorRepository.findAll()) {
+                slotRepository.findByDoctorId(doctor.getId()).forEach(this::refresh);
+            }
+        } finally {
+            engineShards.unlockAll();
+        }
+    }
+
+    @EventListener
+    public void onEvent(OpdEvent event) {
+        if (event.getType() == OpdEventType.TOKEN_COMPLETED) {
+            clocks.computeIfAbsent(event.getDoctorId(), k -> new ConsultClock()).completed(LocalDateTime.now());
+        }
+        refresh(event.getSlotId());
+        refresh(event.getFromSlotId());
+    }
+
+    private void refresh(String slotId) {
+        if (slotId == null) {
+            return;
+        }
+        slotRepository.findById(slotId).ifPresentOrElse(this::refresh, () -> forget(slotId));
+    }
+
+    private void refresh(OpdSlot slot) {
+        LocalDateTime start = slot.getDate().atTime(slot.getStartTime());
+        Set<String> waiting = new HashSet<>();
+        for (Token token : slot.getQueue().toList()) {
+            if (token.getStatus() == TokenStatus.ACTIVE) {
+                positions.put(token.getId(), new Position(slot.getId(), slot.getDoctorId(), start, waiting.size()));
+                waiting.add(token.getId());
+            }
+        }
+        Set<String> previous = tokensBySlot.put(slot.getId(), waiting);
+        if (previous != null) {
+            for (String tokenId : previous) {
+                positions.computeIfPresent(tokenId, (id, p) -> p.slotId().equals(slot.getId())
+                        && !waiting.contains(id) ? null : p);
+            }
+        }
+    }
+
+    private void forget(String slotId) {
+        Set<String> previous = tokensBySlot.remove(slotId);
+        if (previous != null) {
+            for (String tokenId : previous) {
+                positions.computeIfPresent(tokenId, (id, p) -> p.slotId().equals(slotId) ? null : p);
+            }
+        }
+    }
+
+    public record TokenEta(String tokenId, String slotId, int patientsAhead, LocalDateTime estimatedStart,
+                           double averageConsultMinutes) {
+    }
+
+    private record Position(String slotId, String doctorId, LocalDateTime slotStart, int ahead) {
+    }
+
+    private final class ConsultClock {
+        private volatile double averageSeconds = defaultConsultSeconds;
+        private LocalDateTime lastCompleted;
+
+        void completed(LocalDateTime at) {
+            if (lastCompleted != null && lastCompleted.toLocalDate().equals(at.toLocalDate())) {
+                long gap = Duration.between(lastCompleted, at).getSeconds();
+                if (gap > 0 && gap <= maxGapSeconds) {
+                    averageSeconds += smoothing * (gap - averageSeconds);
+                }
+            }
+            lastCompleted = at;
+        }
+    }
+}
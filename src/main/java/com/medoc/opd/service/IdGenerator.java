@@ -0,0 +1,46 @@
+package com.medoc.opd.service;
+
+public interface IdGenerator {
+    long nextId();
+
+    default String nextKey() {
+        return Long.toString(nextId(), Character.MAX_RADIX);
+    }
+
+    /**
+     * An id whose {@link #laneOf(long) lane} is {@code lane}, for generators that split their sequence space.
+     */
+    default long nextId(int lane) {
+        return nextId();
+    }
+
+    default String nextKey(int lane) {
+        return Long.toString(nextId(lane), Character.MAX_RADIX);
+    }
+
+    default int lanes() {
+        return 1;
+    }
+
+    default int laneOf(long id) {
+        return 0;
+    }
+
+    /**
+     * Makes every id generated from now on sort after {@code id}, e.g. one recovered from disk after the wall clock
+     * stepped back across a restart.
+     */
+    default void advancePast(long id) {
+    }
+
+    default void advancePastKey(String key) {
+        if (key == null) {
+            return;
+        }
+        try {
+            advancePast(Long.parseLong(key, Character.MAX_RADIX));
+        } catch (NumberFormatException e) {
+            // ids recovered from before keys were generated here (UUIDs) carry no ordering
+        }
+    }
+}
@@ -1,35 +1,61 @@
 package com.medoc.opd.service;
 
 import com.medoc.opd.model.*;
+import com.medoc.opd.persistence.DayArchive;
+import com.medoc.opd.replay.OperationRecorder;
 import com.medoc.opd.repository.DoctorRepository;
 import com.medoc.opd.repository.SlotRepository;
 import com.medoc.opd.repository.TokenRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
 import java.time.LocalTime;
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.Lock;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class OpdService {
+    private static final int EARLIEST_ATTEMPTS = 3;
+    private static final long SECONDS_PER_DAY = 24 * 60 * 60;
+
     private final DoctorRepository doctorRepository;
     private final SlotRepository slotRepository;
     private final TokenRepository tokenRepository;
+    private final EngineShards engineShards;
+    private final AllocationPlanner allocationPlanner;
+    private final SpecializationIndex specializationIndex;
+    private final BackfillIndex backfillIndex;
+    private final ScheduleService scheduleService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final EngineMetrics engineMetrics;
+    private final ObjectProvider<DayArchive> dayArchive;
+    private final OperationRecorder operationRecorder;
 
     public Doctor onboardDoctor(String name, String specialization) {
-        String id;
-        do {
-            long num = (long) (Math.floor(Math.random() * 90_000_000L) + 10_000_000L);
-            id = String.valueOf(num);
-        } while (doctorRepository.existsById(id));
-
-        Doctor doctor = new Doctor(id, name, specialization);
-        return doctorRepository.save(doctor);
+        Doctor doctor = new Doctor(engineShards.newDoctorKey(), name, specialization);
+        Lock lock = engineShards.lockFor(doctor.getId());
+        lock.lock();
+        try {
+            doctorRepository.save(doctor);
+            operationRecorder.doctorOnboarded(doctor);
+            eventPublisher.publishEvent(OpdEvent.forDoctor(doctor));
+        } finally {
+            lock.unlock();
+        }
+        return doctor;
     }
 
     public OpdSlot createSlot(String doctorId, LocalDate date, LocalTime start, LocalTime end, int capacity) {
@@ -39,110 +65,260 @@ public class OpdService {
         if (!end.isAfter(start)) {
             throw new RuntimeException("End time must be after start time");
         }
-        OpdSlot slot = new OpdSlot(doctorId, date, start, end, capacity);
-        return slotRepository.save(slot);
+        OpdSlot slot = new OpdSlot(engineShards.newKeyFor(doctorId), doctorId, date, start, end, capacity);
+        Lock lock = engineShards.lockFor(doctorId);
+        lock.lock();
+        try {
+            scheduleService.materialize(doctorId, date);
+            for (OpdSlot existing : slotRepository.findByDoctorAndDate(doctorId, date)) {
+                if (existing.getStartTime().isBefore(end) && start.isBefore(existing.getEndTime())) {
+                    throw new RuntimeException("Slot overlaps the existing " + existing.getStartTime() + "-"
+                            + existing.getEndTime() + " slot");
+                }
+            }
+            operationRecorder.slotCreated(doctorId, date, start, end, capacity);
+            slotRepository.save(slot);
+            eventPublisher.publishEvent(OpdEvent.forSlot(OpdEventType.SLOT_CREATED, slot));
+            return slot;
+        } finally {
+            lock.unlock();
+        }
     }
 
     public Token bookToken(String patientName, TokenSource source, String doctorId, LocalDate date) {
+        long started = System.nanoTime();
         if (!doctorRepository.existsById(doctorId)) {
             throw new RuntimeException("Doctor ID not found");
         }
-        List<OpdSlot> doctorSlots = slotRepository.findByDoctorId(doctorId).stream()
-                .filter(s -> s.getDate().equals(date))
-                .toList();
+        Lock lock = engineShards.lockFor(doctorId);
+        lock.lock();
+        try {
+            int ref = operationRecorder.booking(doctorId, patientName, source, date);
+            Token token = allocateNewToken(patientName, source, doctorId, date);
+            operationRecorder.tokenBooked(ref, token);
+            return token;
+        } finally {
+            lock.unlock();
+            engineMetrics.record(EngineMetrics.Operation.BOOK, started);
+        }
+    }
+
+    public Token bookEarliest(String patientName, TokenSource source, String specialization, LocalDate date) {
+        long started = System.nanoTime();
+        if (source == null || specialization == null) {
+            throw new RuntimeException("Source and specialization are required");
+        }
+        try {
+            scheduleService.materializeSpecialization(specialization, date);
+            for (int attempt = 0; attempt < EARLIEST_ATTEMPTS; attempt++) {
+                SpecializationIndex.Entry candidate = specializationIndex.findEarliest(specialization, source, date)
+                        .orElse(null);
+                if (candidate == null) {
+                    operationRecorder.earliestBooking(null, specialization, patientName, source, date);
+                    throw new RuntimeException("No " + specialization + " slots available on " + date);
+                }
+                Lock lock = engineShards.lockFor(candidate.doctorId());
+                lock.lock();
+                try {
+                    if (specializationIndex.admits(candidate.slotId(), source)) {
+                        int ref = operationRecorder.earliestBooking(candidate.doctorId(), specialization, patientName,
+                                source, date);
+                        Token token = allocateNewToken(patientName, source, candidate.doctorId(), date);
+                        operationRecorder.tokenBooked(ref, token);
+                        return token;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+            operationRecorder.earliestBooking(null, specialization, patientName, source, date);
+            throw new RuntimeException("Slots full. Please try again later (or higher priority needed).");
+        } finally {
+            engineMetrics.record(EngineMetrics.Operation.BOOK_EARLIEST, started);
+        }
+    }
+
+    private Token allocateNewToken(String patientName, TokenSource source, String doctorId, LocalDate date) {
+        scheduleService.materialize(doctorId, date);
+        List<OpdSlot> doctorSlots = slotRepository.findByDoctorAndDate(doctorId, date);
 
         if (doctorSlots.isEmpty()) {
             throw new RuntimeException("No slots available for this doctor on " + date);
         }
 
-        Token newToken = new Token(patientName, source);
-        tokenRepository.save(newToken);
+        Token newToken = new Token(engineShards.newKeyFor(doctorId), patientName, source);
 
-        boolean allocated = false;
-        for (OpdSlot slot : doctorSlots) {
-            if (tryAllocateToSlot(newToken, slot)) {
-                allocated = true;
-                break;
-            }
-        }
+        AllocationPlan plan = allocationPlanner.planBooking(List.of(newToken), doctorSlots);
+        List<TokenMove> moves = applyPlan(plan);
 
-        if (!allocated) {
+        if (!plan.isPlaced(newToken)) {
             if (source == TokenSource.EMERGENCY) {
                 OpdSlot firstSlot = doctorSlots.get(0);
                 log.info("Emergency Allocation: Forcing token {} into slot {}", newToken.getId(), firstSlot.getId());
-                firstSlot.getTokens().add(newToken);
+                engineMetrics.recordEmergencyOverbook();
+                firstSlot.getQueue().add(newToken);
                 newToken.setAssignedSlotId(firstSlot.getId());
                 newToken.setStatus(TokenStatus.ACTIVE);
             } else {
                 newToken.setStatus(TokenStatus.CANCELLED);
+                tokenRepository.save(newToken);
+                engineMetrics.recordRejection(source);
+                eventPublisher.publishEvent(OpdEvent.forToken(OpdEventType.TOKEN_REJECTED, doctorId, newToken, null));
                 log.warn("Could not allocate token {} - Slots full and priority too low", newToken.getId());
                 throw new RuntimeException("Slots full. Please try again later (or higher priority needed).");
             }
         }
 
+        tokenRepository.save(newToken);
+        eventPublisher.publishEvent(OpdEvent.forToken(OpdEventType.TOKEN_ALLOCATED, doctorId, newToken, null));
+        publishMoves(doctorId, moves);
         return newToken;
     }
 
-    private boolean tryAllocateToSlot(Token incomingToken, OpdSlot slot) {
-        List<Token> currentTokens = slot.getTokens();
+    public List<BookingResult> bookTokens(List<BookingItem> items) {
+        long started = System.nanoTime();
+        BookingResult[] results = new BookingResult[items.size()];
+        Map<DoctorDay, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            BookingItem item = items.get(i);
+            groups.computeIfAbsent(new DoctorDay(item.getDoctorId(), item.getDate()), k -> new ArrayList<>()).add(i);
+        }
 
-        long activeCount = currentTokens.stream()
-                .filter(t -> t.getStatus() == TokenStatus.ACTIVE)
-                .count();
+        for (Map.Entry<DoctorDay, List<Integer>> group : groups.entrySet()) {
+            DoctorDay day = group.getKey();
+            List<BookingItem> groupItems = group.getValue().stream().map(items::get).toList();
+            if (day.doctorId() == null || !doctorRepository.existsById(day.doctorId())) {
+                operationRecorder.batch(day.doctorId(), day.date(), groupItems);
+                group.getValue().forEach(i -> results[i] = BookingResult.rejected(null, "Doctor ID not found"));
+                continue;
+            }
+            Lock lock = engineShards.lockFor(day.doctorId());
+            lock.lock();
+            try {
+                int[] refs = operationRecorder.batch(day.doctorId(), day.date(), groupItems);
+                allocateBatch(day, group.getValue(), items, results);
+                for (int i = 0; i < refs.length; i++) {
+                    BookingResult result = results[group.getValue().get(i)];
+                    if (result.isAllocated()) {
+                        operationRecorder.tokenBooked(refs[i], result.getToken());
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        engineMetrics.record(EngineMetrics.Operation.BATCH_BOOK, started);
+        return List.of(results);
+    }
 
-        if (activeCount < slot.getMaxCapacity()) {
-            currentTokens.add(incomingToken);
-            Collections.sort(currentTokens);
-            incomingToken.setAssignedSlotId(slot.getId());
-            return true;
+    private void allocateBatch(DoctorDay day, List<Integer> indices, List<BookingItem> items, BookingResult[] results) {
+        scheduleService.materialize(day.doctorId(), day.date());
+        List<OpdSlot> daySlots = slotRepository.findByDoctorAndDate(day.doctorId(), day.date());
+        if (daySlots.isEmpty()) {
+            indices.forEach(i -> results[i] = BookingResult.rejected(null,
+                    "No slots available for this doctor on " + day.date()));
+            return;
         }
 
-        Token lowestToken = currentTokens.get(currentTokens.size() - 1);
+        Map<Token, Integer> origin = new IdentityHashMap<>();
+        List<Token> tokens = new ArrayList<>(indices.size());
+        for (int i : indices) {
+            BookingItem item = items.get(i);
+            Token token = new Token(engineShards.newKeyFor(day.doctorId()), item.getPatientName(), item.getSource());
+            origin.put(token, i);
+            results[i] = new BookingResult(false, token, null, new ArrayList<>(), null);
+            tokens.add(token);
+        }
 
-        if (incomingToken.compareTo(lowestToken) < 0) {
-            log.info("Reallocation: Bumping token {} (Source: {}) to make room for {} (Source: {})",
-                    lowestToken.getId(), lowestToken.getSource(), incomingToken.getId(), incomingToken.getSource());
+        AllocationPlan plan = allocationPlanner.planBooking(tokens, daySlots);
+        for (AllocationPlan.Step step : plan.getSteps()) {
+            if (step.isDisplacement()) {
+                int displacer = origin.get(step.displacedBy());
+                origin.put(step.token(), displacer);
+                results[displacer].getBumpedTokenIds().add(step.token().getId());
+            }
+        }
+        List<TokenMove> moves = applyPlan(plan);
+
+        for (Token token : plan.getUnplaced()) {
+            if (token.getSource() == TokenSource.EMERGENCY) {
+                OpdSlot firstSlot = daySlots.get(0);
+                log.info("Emergency Allocation: Forcing token {} into slot {}", token.getId(), firstSlot.getId());
+                engineMetrics.recordEmergencyOverbook();
+                firstSlot.getQueue().add(token);
+                token.setAssignedSlotId(firstSlot.getId());
+            } else {
+                token.setStatus(TokenStatus.CANCELLED);
+                engineMetrics.recordRejection(token.getSource());
+                results[origin.get(token)].setError("Slots full. Please try again later (or higher priority needed).");
+                log.warn("Could not allocate token {} - Slots full and priority too low", token.getId());
+            }
+        }
 
-            currentTokens.remove(currentTokens.size() - 1);
+        for (int i : indices) {
+            Token token = results[i].getToken();
+            tokenRepository.save(token);
+            if (token.getStatus() == TokenStatus.ACTIVE) {
+                results[i].setAllocated(true);
+                results[i].setSlotId(token.getAssignedSlotId());
+                eventPublisher.publishEvent(OpdEvent.forToken(OpdEventType.TOKEN_ALLOCATED, day.doctorId(), token, null));
+            } else {
+                eventPublisher.publishEvent(OpdEvent.forToken(OpdEventType.TOKEN_REJECTED, day.doctorId(), token, null));
+            }
+        }
+        publishMoves(day.doctorId(), moves);
+    }
 
-            currentTokens.add(incomingToken);
-            Collections.sort(currentTokens);
-            incomingToken.setAssignedSlotId(slot.getId());
+    private List<TokenMove> applyPlan(AllocationPlan plan) {
+        List<TokenMove> moves = allocationPlanner.apply(plan);
+        plan.getCancelled().forEach(tokenRepository::save);
+        engineMetrics.recordCascade(plan.getMaxChainDepth(), plan.getDisplacements());
+        return moves;
+    }
 
-            reallocateBumpedToken(lowestToken, slot.getDoctorId());
-            return true;
+    private void publishMoves(String doctorId, List<TokenMove> moves) {
+        for (TokenMove move : moves) {
+            tokenRepository.findById(move.getTokenId()).ifPresent(token -> eventPublisher.publishEvent(
+                    OpdEvent.forToken(OpdEventType.TOKEN_BUMPED, doctorId, token, move.getFromSlotId())));
         }
-
-        return false;
     }
 
-    private void reallocateBumpedToken(Token token, String doctorId) {
-        List<OpdSlot> allSlots = slotRepository.findByDoctorId(doctorId);
-        String oldSlotId = token.getAssignedSlotId();
-        int currentSlotIndex = -1;
-        for (int i = 0; i < allSlots.size(); i++) {
-            if (allSlots.get(i).getId().equals(oldSlotId)) {
-                currentSlotIndex = i;
-                break;
-            }
+    public void cancelToken(String tokenId) {
+        long started = System.nanoTime();
+        Token token = tokenRepository.findById(tokenId)
+                .orElseThrow(() -> new RuntimeException("Token not found"));
+
+        if (token.getStatus() != TokenStatus.ACTIVE) {
+            throw new RuntimeException("Token is not active");
         }
 
-        boolean reallocated = false;
-        for (int i = currentSlotIndex + 1; i < allSlots.size(); i++) {
-            if (tryAllocateToSlot(token, allSlots.get(i))) {
-                reallocated = true;
-                break;
+        Lock lock = lockForToken(token);
+        lock.lock();
+        try {
+            operationRecorder.cancel(tokenId);
+            if (token.getStatus() != TokenStatus.ACTIVE) {
+                throw new RuntimeException("Token is not active");
             }
-        }
 
-        if (!reallocated) {
+            String slotId = token.getAssignedSlotId();
+            OpdSlot slot = slotRepository.findById(slotId)
+                    .orElseThrow(() -> new RuntimeException("Slot not found"));
+            slot.getQueue().remove(token.getId());
+
             token.setStatus(TokenStatus.CANCELLED);
             token.setAssignedSlotId(null);
-            log.warn("Bumped token {} could not be reallocated. Marking CANCELLED.", token.getId());
+            tokenRepository.save(token);
+            eventPublisher.publishEvent(OpdEvent.forToken(OpdEventType.TOKEN_CANCELLED, slot.getDoctorId(), token, slotId));
+            log.info("Token {} cancelled.", tokenId);
+            backfill(slot);
+        } finally {
+            lock.unlock();
+            engineMetrics.record(EngineMetrics.Operation.CANCEL, started);
         }
     }
 
-    public void cancelToken(String tokenId) {
+    public void completeToken(String tokenId) {
+        long started = System.nanoTime();
         Token token = tokenRepository.findById(tokenId)
                 .orElseThrow(() -> new RuntimeException("Token not found"));
 
@@ -150,139 +326,325 @@ public class OpdService {
             throw new RuntimeException("Token is not active");
         }
 
-        String slotId = token.getAssignedSlotId();
-        if (slotId != null) {
-            OpdSlot slot = slotRepository.findById(slotId)
+        Lock lock = lockForToken(token);
+        lock.lock();
+        try {
+            operationRecorder.complete(tokenId);
+            if (token.getStatus() != TokenStatus.ACTIVE) {
+                throw new RuntimeException("Token is not active");
+            }
+            OpdSlot slot = slotRepository.findById(token.getAssignedSlotId())
                     .orElseThrow(() -> new RuntimeException("Slot not found"));
-            slot.getTokens().remove(token);
+            slot.getQueue().complete(token);
+            tokenRepository.save(token);
+            eventPublisher.publishEvent(OpdEvent.forToken(OpdEventType.TOKEN_COMPLETED, slot.getDoctorId(), token, null));
+            log.info("Token {} completed.", tokenId);
+        } finally {
+            lock.unlock();
+            engineMetrics.record(EngineMetrics.Operation.COMPLETE, started);
         }
-
-        token.setStatus(TokenStatus.CANCELLED);
-        token.setAssignedSlotId(null);
-        log.info("Token {} cancelled.", tokenId);
     }
 
     public List<OpdSlot> getDoctorSlots(String doctorId) {
         if (!doctorRepository.existsById(doctorId)) {
             throw new RuntimeException("Doctor ID not found");
         }
-        return slotRepository.findByDoctorId(doctorId);
+        Lock lock = engineShards.lockFor(doctorId);
+        lock.lock();
+        try {
+            return views(slotRepository.findByDoctorId(doctorId));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public List<OpdSlot> getDoctorSlots(String doctorId, LocalDate date) {
+        if (!doctorRepository.existsById(doctorId)) {
+            throw new RuntimeException("Doctor ID not found");
+        }
+        List<OpdSlot> live;
+        Lock lock = engineShards.lockFor(doctorId);
+        lock.lock();
+        try {
+            scheduleService.materialize(doctorId, date);
+            live = views(slotRepository.findByDoctorAndDate(doctorId, date));
+        } finally {
+            lock.unlock();
+        }
+        DayArchive archive = dayArchive.getIfAvailable();
+        if (!live.isEmpty() || archive == null) {
+            return live;
+        }
+        return archive.findDoctorSlots(doctorId, date);
+    }
+
+    private List<OpdSlot> views(List<OpdSlot> slots) {
+        Map<String, List<Token>> completed = new HashMap<>();
+        for (Token token : tokenRepository.findFinishedInSlots(slots.stream().map(OpdSlot::getId).toList())) {
+            if (token.getStatus() == TokenStatus.COMPLETED) {
+                completed.computeIfAbsent(token.getAssignedSlotId(), k -> new ArrayList<>()).add(token);
+            }
+        }
+        return slots.stream()
+                .map(slot -> slot.snapshot(completed.getOrDefault(slot.getId(), List.of())))
+                .toList();
+    }
+
+    public List<Token> findTokens(String patientName, TokenStatus status) {
+        boolean byPatient = patientName != null && !patientName.isBlank();
+        if (!byPatient && status == null) {
+            throw new RuntimeException("Patient name or status is required");
+        }
+        List<Token> tokens;
+        if (byPatient) {
+            tokens = tokenRepository.findByPatientName(patientName);
+            if (status != null) {
+                tokens.removeIf(token -> token.getStatus() != status);
+            }
+        } else {
+            tokens = tokenRepository.findByStatus(status);
+        }
+        tokens.sort(Comparator.comparingLong(Token::getGlobalOrder));
+        return tokens;
+    }
+
+    public List<Token> getSlotTokens(String slotId) {
+        if (slotRepository.findById(slotId).isEmpty()) {
+            throw new RuntimeException("Slot not found");
+        }
+        List<Token> tokens = tokenRepository.findBySlotId(slotId);
+        tokens.sort(Comparator.comparingLong(Token::getGlobalOrder));
+        return tokens;
     }
 
     public void delaySlot(String slotId, int minutes) {
+        long started = System.nanoTime();
         OpdSlot slot = slotRepository.findById(slotId)
                 .orElseThrow(() -> new RuntimeException("Slot not found"));
 
-        slot.setStartTime(slot.getStartTime().plusMinutes(minutes));
-        slot.setEndTime(slot.getEndTime().plusMinutes(minutes));
+        Lock lock = engineShards.lockFor(slot.getDoctorId());
+        lock.lock();
+        try {
+            operationRecorder.delay(slotId, minutes);
+            List<OpdSlot> daySlots = slotRepository.findByDoctorAndDate(slot.getDoctorId(), slot.getDate());
+            int position = daySlots.indexOf(slot);
+            if (minutes < 0 && position > 0
+                    && toSeconds(slot.getStartTime()) + minutes * 60L < toSeconds(daySlots.get(position - 1).getEndTime())) {
+                throw new RuntimeException("Slot would overlap the previous slot");
+            }
+
+            List<Reschedule> shifts = new ArrayList<>();
+            long start = toSeconds(slot.getStartTime()) + minutes * 60L;
+            long end = toSeconds(slot.getEndTime()) + minutes * 60L;
+            shifts.add(new Reschedule(slot, start, end));
+            for (int i = position + 1; i < daySlots.size(); i++) {
+                OpdSlot next = daySlots.get(i);
+                long overlap = end - toSeconds(next.getStartTime());
+                if (overlap <= 0) {
+                    break;
+                }
+                start = toSeconds(next.getStartTime()) + overlap;
+                end = toSeconds(next.getEndTime()) + overlap;
+                shifts.add(new Reschedule(next, start, end));
+            }
+            for (Reschedule shift : shifts) {
+                if (shift.start() < 0 || shift.end() > SECONDS_PER_DAY) {
+                    throw new RuntimeException("Delay would move a slot outside the day");
+                }
+            }
+
+            for (Reschedule shift : shifts) {
+                OpdSlot moved = shift.slot();
+                slotRepository.reschedule(moved, toTime(shift.start()), toTime(shift.end()));
+                if (moved != slot) {
+                    log.info("Delay of slot {} pushed slot {} to {}", slotId, moved.getId(), moved.getStartTime());
+                }
+                eventPublisher.publishEvent(OpdEvent.forSlot(OpdEventType.SLOT_DELAYED, moved));
+            }
+        } finally {
+            lock.unlock();
+            engineMetrics.record(EngineMetrics.Operation.DELAY, started);
+        }
     }
 
     public void toggleNoShow(String tokenId) {
+        long started = System.nanoTime();
         Token token = tokenRepository.findById(tokenId)
                 .orElseThrow(() -> new RuntimeException("Token not found"));
 
-        if (token.getStatus() == TokenStatus.ACTIVE) {
-            token.setStatus(TokenStatus.NO_SHOW);
-            log.info("Token {} marked as NO_SHOW (Capacity freed).", tokenId);
-
-            if (token.getAssignedSlotId() != null) {
-                OpdSlot currentSlot = slotRepository.findById(token.getAssignedSlotId())
-                        .orElseThrow(() -> new RuntimeException("Slot not found"));
-
-                List<OpdSlot> allSlots = slotRepository.findByDoctorId(currentSlot.getDoctorId());
-                int currentIndex = -1;
-                for (int i = 0; i < allSlots.size(); i++) {
-                    if (allSlots.get(i).getId().equals(currentSlot.getId())) {
-                        currentIndex = i;
-                        break;
-                    }
-                }
+        if (token.getStatus() != TokenStatus.ACTIVE && token.getStatus() != TokenStatus.NO_SHOW) {
+            throw new RuntimeException("Token must be ACTIVE or NO_SHOW to toggle.");
+        }
 
-                if (currentIndex != -1 && currentIndex + 1 < allSlots.size()) {
-                    OpdSlot nextSlot = allSlots.get(currentIndex + 1);
-
-                    if (nextSlot.getDate().equals(currentSlot.getDate())) {
-                        Token candidate = null;
-                        for (Token t : nextSlot.getTokens()) {
-                            if (t.getStatus() == TokenStatus.ACTIVE) {
-                                candidate = t;
-                                break;
-                            }
-                        }
-
-                        if (candidate != null) {
-                            log.info("Smart Fill: Pulling token {} from Next Slot ({}) into Current Slot ({})",
-                                    candidate.getPatientName(), nextSlot.getStartTime(), currentSlot.getStartTime());
-
-                            nextSlot.getTokens().remove(candidate);
-                            candidate.setAssignedSlotId(currentSlot.getId());
-                            currentSlot.getTokens().add(candidate);
-                            Collections.sort(currentSlot.getTokens());
-                        }
-                    }
-                }
+        Lock lock = lockForToken(token);
+        lock.lock();
+        try {
+            operationRecorder.noShow(tokenId);
+            if (token.getStatus() != TokenStatus.ACTIVE && token.getStatus() != TokenStatus.NO_SHOW) {
+                throw new RuntimeException("Token must be ACTIVE or NO_SHOW to toggle.");
             }
+            applyNoShowToggle(token);
+        } finally {
+            lock.unlock();
+            engineMetrics.record(EngineMetrics.Operation.NO_SHOW, started);
+        }
+    }
+
+    private void applyNoShowToggle(Token token) {
+        OpdSlot slot = slotRepository.findById(token.getAssignedSlotId())
+                .orElseThrow(() -> new RuntimeException("Slot not found"));
+        SlotQueue queue = slot.getQueue();
+
+        if (token.getStatus() == TokenStatus.ACTIVE) {
+            queue.updateStatus(token, TokenStatus.NO_SHOW);
+            log.info("Token {} marked as NO_SHOW (Capacity freed).", token.getId());
+            eventPublisher.publishEvent(OpdEvent.forToken(OpdEventType.TOKEN_NO_SHOW, slot.getDoctorId(), token, null));
+
+            backfill(slot);
         } else if (token.getStatus() == TokenStatus.NO_SHOW) {
-            token.setStatus(TokenStatus.ACTIVE);
-            log.info("Token {} toggled back to ACTIVE (Capacity consumed).", tokenId);
-
-            if (token.getAssignedSlotId() != null) {
-                OpdSlot slot = slotRepository.findById(token.getAssignedSlotId())
-                        .orElseThrow(() -> new RuntimeException("Slot not found"));
-
-                long activeCount = slot.getTokens().stream()
-                        .filter(t -> t.getStatus() == TokenStatus.ACTIVE)
-                        .count();
-
-                if (activeCount > slot.getMaxCapacity()) {
-                    Collections.sort(slot.getTokens());
-
-                    Token bumpCandidate = null;
-                    for (int i = slot.getTokens().size() - 1; i >= 0; i--) {
-                        Token t = slot.getTokens().get(i);
-                        if (t.getStatus() == TokenStatus.ACTIVE) {
-                            bumpCandidate = t;
-                            break;
-                        }
-                    }
+            queue.updateStatus(token, TokenStatus.ACTIVE);
+            log.info("Token {} toggled back to ACTIVE (Capacity consumed).", token.getId());
+            eventPublisher.publishEvent(OpdEvent.forToken(OpdEventType.TOKEN_RESTORED, slot.getDoctorId(), token, null));
 
-                    if (bumpCandidate != null) {
-                        log.info("Undo No-Show caused overflow. Bumping token {}", bumpCandidate.getId());
-                        slot.getTokens().remove(bumpCandidate);
-                        reallocateBumpedToken(bumpCandidate, slot.getDoctorId());
-                    }
-                }
+            if (queue.occupiedCount() > slot.getMaxCapacity()) {
+                log.info("Undo No-Show caused overflow. Bumping token {}", queue.peekLowestActive().getId());
+                publishMoves(slot.getDoctorId(), applyPlan(allocationPlanner.planCapacityCut(slot, slot.getMaxCapacity())));
             }
         } else {
             throw new RuntimeException("Token must be ACTIVE or NO_SHOW to toggle.");
         }
     }
 
-    public void reduceSlotCapacity(String slotId, int newCapacity) {
+    private List<TokenMove> backfill(OpdSlot freed) {
+        List<TokenMove> moves = new ArrayList<>();
+        PriorityQueue<OpdSlot> holes = new PriorityQueue<>(
+                (a, b) -> Integer.compare(backfillIndex.positionOf(a), backfillIndex.positionOf(b)));
+        holes.add(freed);
+        while (!holes.isEmpty()) {
+            OpdSlot target = holes.poll();
+            while (target.getQueue().occupiedCount() < target.getMaxCapacity()) {
+                OpdSlot donor = backfillIndex.bestDonorAfter(target);
+                if (donor == null) {
+                    break;
+                }
+                Token candidate = donor.getQueue().peekHighestActive();
+                log.info("Smart Fill: Pulling token {} from slot ({}) into slot ({})",
+                        candidate.getPatientName(), donor.getStartTime(), target.getStartTime());
+
+                donor.getQueue().remove(candidate.getId());
+                candidate.setAssignedSlotId(target.getId());
+                target.getQueue().add(candidate);
+                moves.add(new TokenMove(candidate.getId(), donor.getId(), target.getId()));
+                eventPublisher.publishEvent(OpdEvent.forToken(OpdEventType.TOKEN_MOVED, target.getDoctorId(),
+                        candidate, donor.getId()));
+                if (!holes.contains(donor)) {
+                    holes.add(donor);
+                }
+            }
+        }
+        return moves;
+    }
+
+    public List<TokenMove> resizeSlot(String slotId, int newCapacity) {
+        long started = System.nanoTime();
         OpdSlot slot = slotRepository.findById(slotId)
                 .orElseThrow(() -> new RuntimeException("Slot not found"));
 
         if (newCapacity < 0)
             throw new RuntimeException("Capacity cannot be negative");
 
-        log.info("Reducing capacity of slot {} to {}", slotId, newCapacity);
-        slot.setMaxCapacity(newCapacity);
+        Lock lock = engineShards.lockFor(slot.getDoctorId());
+        lock.lock();
+        try {
+            operationRecorder.resize(slotId, newCapacity);
+            int completed = slot.getQueue().completedCount();
+            if (newCapacity < completed) {
+                throw new RuntimeException("Capacity cannot be below the " + completed
+                        + " consultation(s) already completed in this slot");
+            }
+            log.info("Resizing slot {} from {} to {}", slotId, slot.getMaxCapacity(), newCapacity);
+            AllocationPlan plan = allocationPlanner.planCapacityCut(slot, newCapacity);
+            slot.setMaxCapacity(newCapacity);
+            eventPublisher.publishEvent(OpdEvent.forSlot(OpdEventType.SLOT_RESIZED, slot));
+            List<TokenMove> moves = applyPlan(plan);
+            publishMoves(slot.getDoctorId(), moves);
+            if (moves.isEmpty()) {
+                moves = backfill(slot);
+            }
+            return moves;
+        } finally {
+            lock.unlock();
+            engineMetrics.record(EngineMetrics.Operation.RESIZE, started);
+        }
+    }
 
-        List<Token> currentTokens = slot.getTokens();
-        while (currentTokens.size() > newCapacity) {
-            Token overflowToken = currentTokens.remove(currentTokens.size() - 1);
-            log.info("Capacity Crunch: Pushing token {} (Source: {}) to next slot",
-                    overflowToken.getPatientName(), overflowToken.getSource());
+    public List<TokenMove> deleteSlot(String slotId) {
+        long started = System.nanoTime();
+        OpdSlot slot = slotRepository.findById(slotId)
+                .orElseThrow(() -> new RuntimeException("Slot not found"));
+
+        Lock lock = engineShards.lockFor(slot.getDoctorId());
+        lock.lock();
+        try {
+            operationRecorder.delete(slotId);
+            log.info("Deleting slot: {} - {}", slot.getStartTime(), slot.getEndTime());
+            List<Token> active = new ArrayList<>();
+            List<Token> noShows = new ArrayList<>();
+            for (Token token : slot.getQueue().toList()) {
+                if (token.getStatus() == TokenStatus.ACTIVE) {
+                    active.add(token);
+                } else if (token.getStatus() == TokenStatus.NO_SHOW) {
+                    noShows.add(token);
+                }
+            }
 
-            reallocateBumpedToken(overflowToken, slot.getDoctorId());
+            slotRepository.deleteById(slotId);
+            List<OpdSlot> remaining = slotRepository.findByDoctorAndDate(slot.getDoctorId(), slot.getDate());
+            AllocationPlan plan = allocationPlanner.planEviction(slot, active, remaining);
+            eventPublisher.publishEvent(OpdEvent.forSlot(OpdEventType.SLOT_DELETED, slot));
+
+            List<TokenMove> moves = applyPlan(plan);
+            publishMoves(slot.getDoctorId(), moves);
+            List<TokenMove> result = new ArrayList<>(moves);
+            for (Token token : noShows) {
+                slot.getQueue().remove(token.getId());
+                token.setStatus(TokenStatus.CANCELLED);
+                token.setAssignedSlotId(null);
+                tokenRepository.save(token);
+                eventPublisher.publishEvent(OpdEvent.forToken(OpdEventType.TOKEN_CANCELLED, slot.getDoctorId(), token, slotId));
+                result.add(new TokenMove(token.getId(), slotId, null));
+            }
+            log.info("Slot {} deleted: {} tokens migrated, {} cancelled", slotId,
+                    result.stream().filter(m -> m.getToSlotId() != null).count(),
+                    result.stream().filter(m -> m.getToSlotId() == null).count());
+            return result;
+        } finally {
+            lock.unlock();
+            engineMetrics.record(EngineMetrics.Operation.DELETE, started);
         }
     }
 
-    public void deleteSlot(String slotId) {
+    private static long toSeconds(LocalTime time) {
+        return time.toSecondOfDay();
+    }
+
+    private static LocalTime toTime(long seconds) {
+        return seconds == SECONDS_PER_DAY ? LocalTime.MAX : LocalTime.ofSecondOfDay(seconds);
+    }
+
+    private record DoctorDay(String doctorId, LocalDate date) {
+    }
+
+    private record Reschedule(OpdSlot slot, long start, long end) {
+    }
+
+    private Lock lockForToken(Token token) {
+        String slotId = token.getAssignedSlotId();
+        if (slotId == null) {
+            throw new RuntimeException("Token is not assigned to a slot");
+        }
         OpdSlot slot = slotRepository.findById(slotId)
                 .orElseThrow(() -> new RuntimeException("Slot not found"));
-
-        log.info("Deleting slot: {} - {}", slot.getStartTime(), slot.getEndTime());
-        slotRepository.deleteById(slotId);
+        return engineShards.lockFor(slot.getDoctorId());
     }
 }
@@ -0,0 +1,228 @@
+package com.medoc.opd.service;
+
+import com.medoc.opd.model.Doctor;
+import com.medoc.opd.model.OpdEvent;
+import com.medoc.opd.model.OpdEventType;
+import com.medoc.opd.model.OpdSlot;
+import com.medoc.opd.model.ScheduleTemplate;
+import com.medoc.opd.repository.DoctorRepository;
+import com.medoc.opd.repository.ScheduleTemplateRepository;
+import com.medoc.opd.replay.OperationRecorder;
+import com.medoc.opd.repository.SlotRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+
+@Service
+@Slf4j
+public class ScheduleService {
+    private final DoctorRepository doctorRepository;
+    private final SlotRepository slotRepository;
+    private final ScheduleTemplateRepository templateRepository;
+    private final EngineShards engineShards;
+    private final ApplicationEventPublisher eventPublisher;
+    private final OperationRecorder operationRecorder;
+    private final int maxHorizonDays;
+    private final Map<String, Set<LocalDate>> materialized = new ConcurrentHashMap<>();
+    private final Map<String, Set<LocalDate>> materializedSpecializations = new ConcurrentHashMap<>();
+
+    public ScheduleService(DoctorRepository doctorRepository, SlotRepository slotRepository,
+                           ScheduleTemplateRepository templateRepository, EngineShards engineShards,
+                           ApplicationEventPublisher eventPublisher,
+                           OperationRecorder operationRecorder,
+                           @Value("${opd.schedule.max-horizon-days:366}") int maxHorizonDays) {
+        this.doctorRepository = doctorRepository;
+        this.slotRepository = slotRepository;
+        this.templateRepository = templateRepository;
+        this.engineShards = engineShards;
+        this.eventPublisher = eventPublisher;
+        this.operationRecorder = operationRecorder;
+        this.maxHorizonDays = maxHorizonDays;
+    }
+
+    public ScheduleTemplate addTemplate(String doctorId, DayOfWeek dayOfWeek, LocalTime sessionStart,
+                                       LocalTime sessionEnd, int slotMinutes, int capacity) {
+        if (!doctorRepository.existsById(doctorId)) {
+            throw new RuntimeException("Doctor ID not found");
+        }
+        if (dayOfWeek == null || sessionStart == null || sessionEnd == null) {
+            throw new RuntimeException("Day of week and session window are required");
+        }
+        if (!sessionEnd.isAfter(sessionStart)) {
+            throw new RuntimeException("Session end must be after session start");
+        }
+        if (slotMinutes <= 0 || minuteOfDay(sessionStart) + slotMinutes > minuteOfDay(sessionEnd)) {
+            throw new RuntimeException("Slot length must fit inside the session window");
+        }
+        if (capacity < 0) {
+            throw new RuntimeException("Capacity cannot be negative");
+        }
+
+        Lock lock = engineShards.lockFor(doctorId);
+        lock.lock();
+        try {
+            operationRecorder.templateAdded(doctorId, dayOfWeek, sessionStart, sessionEnd, slotMinutes, capacity);
+            for (ScheduleTemplate existing : templateRepository.findByDoctorId(doctorId)) {
+                if (existing.getDayOfWeek() == dayOfWeek && existing.getSessionStart().isBefore(sessionEnd)
+                        && sessionStart.isBefore(existing.getSessionEnd())) {
+                    throw new RuntimeException("Session overlaps an existing " + dayOfWeek + " template");
+                }
+            }
+            ScheduleTemplate template = new ScheduleTemplate(engineShards.newKeyFor(doctorId), doctorId, dayOfWeek,
+                    sessionStart, sessionEnd, slotMinutes, capacity);
+            templateRepository.save(template);
+            materialized.remove(doctorId);
+            doctorRepository.findById(doctorId).ifPresent(doctor ->
+                    materializedSpecializations.remove(specializationKey(doctor.getSpecialization())));
+            eventPublisher.publishEvent(OpdEvent.forTemplate(template));
+            return template;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public List<ScheduleTemplate> getTemplates(String doctorId) {
+        if (!doctorRepository.existsById(doctorId)) {
+            throw new RuntimeException("Doctor ID not found");
+        }
+        return templateRepository.findByDoctorId(doctorId);
+    }
+
+    public int generate(LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            throw new RuntimeException("Horizon end must not be before its start");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= maxHorizonDays) {
+            throw new RuntimeException("Horizon cannot exceed " + maxHorizonDays + " days");
+        }
+        int created = 0;
+        for (String doctorId : templateRepository.findDoctorIds()) {
+            Lock lock = engineShards.lockFor(doctorId);
+            lock.lock();
+            try {
+                List<OpdSlot> batch = new ArrayList<>();
+                for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+                    expandDay(doctorId, date, batch);
+                }
+                insert(batch);
+                created += batch.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+        log.info("Generated {} slots from templates for {} to {}", created, from, to);
+        return created;
+    }
+
+    public void materialize(String doctorId, LocalDate date) {
+        if (!withinHorizon(date) || templateRepository.findByDoctorId(doctorId).isEmpty()) {
+            return;
+        }
+        List<OpdSlot> batch = new ArrayList<>();
+        expandDay(doctorId, date, batch);
+        insert(batch);
+    }
+
+    public void materializeSpecialization(String specialization, LocalDate date) {
+        if (!withinHorizon(date)) {
+            return;
+        }
+        Set<LocalDate> days = materializedSpecializations.computeIfAbsent(specializationKey(specialization),
+                k -> ConcurrentHashMap.newKeySet());
+        if (days.contains(date)) {
+            return;
+        }
+        for (String doctorId : templateRepository.findDoctorIds()) {
+            String doctorSpecialization = doctorRepository.findById(doctorId)
+                    .map(Doctor::getSpecialization)
+                    .orElse(null);
+            if (doctorSpecialization == null
+                    || !specializationKey(doctorSpecialization).equals(specializationKey(specialization))) {
+                continue;
+            }
+            Lock lock = engineShards.lockFor(doctorId);
+            lock.lock();
+            try {
+                materialize(doctorId, date);
+            } finally {
+                lock.unlock();
+            }
+        }
+        days.add(date);
+    }
+
+    @EventListener
+    public void onEvent(OpdEvent event) {
+        if (event.getType() != OpdEventType.SLOT_ARCHIVED) {
+            return;
+        }
+        materialized.computeIfPresent(event.getDoctorId(), (k, days) -> {
+            days.remove(event.getDate());
+            return days.isEmpty() ? null : days;
+        });
+        materializedSpecializations.values().forEach(days -> days.remove(event.getDate()));
+    }
+
+    private void expandDay(String doctorId, LocalDate date, List<OpdSlot> batch) {
+        Set<LocalDate> days = materialized.get(doctorId);
+        if (days != null && days.contains(date)
+                || !slotRepository.findByDoctorAndDate(doctorId, date).isEmpty()) {
+            return;
+        }
+        int before = batch.size();
+        for (ScheduleTemplate template : templateRepository.findByDoctorId(doctorId)) {
+            if (template.getDayOfWeek() != date.getDayOfWeek()) {
+                continue;
+            }
+            int end = minuteOfDay(template.getSessionEnd());
+            for (int start = minuteOfDay(template.getSessionStart());
+                 start + template.getSlotMinutes() <= end;
+                 start += template.getSlotMinutes()) {
+                batch.add(new OpdSlot(engineShards.newKeyFor(doctorId), doctorId, date,
+                        LocalTime.MIN.plusMinutes(start),
+                        LocalTime.MIN.plusMinutes(start + template.getSlotMinutes()),
+                        template.getCapacity()));
+            }
+        }
+        if (batch.size() > before) {
+            materialized.computeIfAbsent(doctorId, k -> ConcurrentHashMap.newKeySet()).add(date);
+        }
+    }
+
+    private void insert(List<OpdSlot> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        slotRepository.saveAll(batch);
+        for (OpdSlot slot : batch) {
+            eventPublisher.publishEvent(OpdEvent.forSlot(OpdEventType.SLOT_CREATED, slot));
+        }
+    }
+
+    private boolean withinHorizon(LocalDate date) {
+        LocalDate today = LocalDate.now();
+        return !date.isBefore(today) && date.isBefore(today.plusDays(maxHorizonDays));
+    }
+
+    private static String specializationKey(String specialization) {
+        return specialization.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static int minuteOfDay(LocalTime time) {
+        return time.getHour() * 60 + time.getMinute();
+    }
+}
@@ -0,0 +1,196 @@
+package com.medoc.opd.service;
+
+import com.medoc.opd.model.OpdEvent;
+import com.medoc.opd.model.OpdSlot;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Each subscriber has its own bounded queue, drained by at most one dispatcher thread at a time, so a slow display
+ * only delays itself. A subscriber that falls a full queue behind has its backlog dropped and gets a fresh snapshot
+ * in its place instead of a stream of stale events.
+ * <p>
+ * The dispatcher pool is fixed; a subscriber holds a thread for at most {@link #DRAIN_BATCH} events before it
+ * goes to the back of the line, so the number of displays does not decide the number of threads.
+ */
+@Service
+@Slf4j
+public class SlotStreamService {
+    private static final String SNAPSHOT = "snapshot";
+    private static final int DRAIN_BATCH = 32;
+
+    private final OpdService opdService;
+    private final EngineShards engineShards;
+    private final long timeoutMillis;
+    private final int queueCapacity;
+    private final Map<String, List<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final ExecutorService dispatcher;
+
+    public SlotStreamService(OpdService opdService, EngineShards engineShards,
+                             @Value("${opd.stream.timeout-ms:1800000}") long timeoutMillis,
+                             @Value("${opd.stream.queue-capacity:256}") int queueCapacity,
+                             @Value("${opd.stream.dispatcher-threads:0}") int dispatcherThreads) {
+        this.opdService = opdService;
+        this.engineShards = engineShards;
+        this.timeoutMillis = timeoutMillis;
+        this.queueCapacity = queueCapacity;
+        int threads = dispatcherThreads > 0 ? dispatcherThreads
+                : Math.max(2, Runtime.getRuntime().availableProcessors());
+        this.dispatcher = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "opd-slot-stream");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public SseEmitter subscribe(String doctorId) {
+        Subscriber subscriber = new Subscriber(doctorId, new SseEmitter(timeoutMillis));
+        Lock lock = engineShards.lockFor(doctorId);
+        lock.lock();
+        try {
+            List<OpdSlot> snapshot = opdService.getDoctorSlots(doctorId);
+            List<Subscriber> doctorSubscribers = subscribers.computeIfAbsent(doctorId, k -> new CopyOnWriteArrayList<>());
+            doctorSubscribers.add(subscriber);
+            subscriber.emitter.onCompletion(subscriber::close);
+            subscriber.emitter.onTimeout(subscriber::close);
+            subscriber.emitter.onError(e -> subscriber.close());
+            subscriber.offer(SNAPSHOT, snapshot);
+        } finally {
+            lock.unlock();
+        }
+        return subscriber.emitter;
+    }
+
+    @EventListener
+    public void onEvent(OpdEvent event) {
+        List<Subscriber> doctorSubscribers = subscribers.get(event.getDoctorId());
+        if (doctorSubscribers == null) {
+            return;
+        }
+        for (Subscriber subscriber : doctorSubscribers) {
+            subscriber.offer(event.getType().name(), event);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.shutdownNow();
+        subscribers.values().forEach(list -> list.forEach(subscriber -> subscriber.emitter.complete()));
+    }
+
+    private record Pending(String name, Object payload) {
+    }
+
+    private final class Subscriber {
+        private final String doctorId;
+        private final SseEmitter emitter;
+        private final ArrayDeque<Pending> queue = new ArrayDeque<>();
+        private boolean draining;
+        private boolean resync;
+        private boolean closed;
+
+        private Subscriber(String doctorId, SseEmitter emitter) {
+            this.doctorId = doctorId;
+            this.emitter = emitter;
+        }
+
+        private void offer(String name, Object payload) {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                if (!resync) {
+                    if (queue.size() < queueCapacity) {
+                        queue.addLast(new Pending(name, payload));
+                    } else {
+                        log.debug("Slot stream subscriber for doctor {} fell behind; resending a snapshot", doctorId);
+                        queue.clear();
+                        resync = true;
+                    }
+                }
+                if (draining) {
+                    return;
+                }
+                draining = true;
+            }
+            try {
+                dispatcher.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                close();
+            }
+        }
+
+        private void drain() {
+            for (int sent = 0; ; sent++) {
+                if (sent == DRAIN_BATCH) {
+                    try {
+                        dispatcher.execute(this::drain);
+                    } catch (RejectedExecutionException e) {
+                        close();
+                    }
+                    return;
+                }
+                Pending next;
+                synchronized (this) {
+                    next = resync ? null : queue.pollFirst();
+                    if (closed || next == null && !resync) {
+                        draining = false;
+                        return;
+                    }
+                }
+                try {
+                    if (next == null) {
+                        next = freshSnapshot();
+                    }
+                    emitter.send(SseEmitter.event().name(next.name()).data(next.payload()));
+                } catch (IOException | RuntimeException e) {
+                    log.debug("Dropping slot stream subscriber: {}", e.getMessage());
+                    close();
+                    emitter.completeWithError(e);
+                }
+            }
+        }
+
+        private Pending freshSnapshot() {
+            Lock lock = engineShards.lockFor(doctorId);
+            lock.lock();
+            try {
+                List<OpdSlot> snapshot = opdService.getDoctorSlots(doctorId);
+                synchronized (this) {
+                    queue.clear();
+                    resync = false;
+                }
+                return new Pending(SNAPSHOT, snapshot);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void close() {
+            synchronized (this) {
+                closed = true;
+                resync = false;
+                queue.clear();
+            }
+            List<Subscriber> doctorSubscribers = subscribers.get(doctorId);
+            if (doctorSubscribers != null) {
+                doctorSubscribers.remove(this);
+            }
+        }
+    }
+}
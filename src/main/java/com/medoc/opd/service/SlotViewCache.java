@@ -0,0 +1,69 @@
+package com.medoc.opd.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.medoc.opd.model.OpdEvent;
+import com.medoc.opd.model.OpdSlot;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+
+@Service
+public class SlotViewCache {
+    private final OpdService opdService;
+    private final EngineShards engineShards;
+    private final ObjectMapper objectMapper;
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final Map<String, AtomicLong> versions = new ConcurrentHashMap<>();
+    private final Map<String, SlotView> views = new ConcurrentHashMap<>();
+
+    public SlotViewCache(OpdService opdService, EngineShards engineShards, ObjectMapper objectMapper) {
+        this.opdService = opdService;
+        this.engineShards = engineShards;
+        this.objectMapper = objectMapper;
+    }
+
+    public SlotView viewFor(String doctorId) {
+        SlotView cached = views.get(doctorId);
+        if (cached != null && cached.version() == versionOf(doctorId)) {
+            return cached;
+        }
+
+        long version;
+        List<OpdSlot> slots;
+        Lock lock = engineShards.lockFor(doctorId);
+        lock.lock();
+        try {
+            version = versionOf(doctorId);
+            slots = opdService.getDoctorSlots(doctorId);
+        } finally {
+            lock.unlock();
+        }
+
+        SlotView view;
+        try {
+            view = new SlotView(version, "\"" + epoch + "-" + version + "\"", objectMapper.writeValueAsBytes(slots));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize slots for doctor " + doctorId, e);
+        }
+        return views.merge(doctorId, view, (current, fresh) -> current.version() >= fresh.version() ? current : fresh);
+    }
+
+    @EventListener
+    public void onEvent(OpdEvent event) {
+        versions.computeIfAbsent(event.getDoctorId(), k -> new AtomicLong()).incrementAndGet();
+    }
+
+    private long versionOf(String doctorId) {
+        AtomicLong version = versions.get(doctorId);
+        return version == null ? 0 : version.get();
+    }
+
+    public record SlotView(long version, String etag, byte[] json) {
+    }
+}
@@ -0,0 +1,98 @@
+package com.medoc.opd.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 41 bits of milliseconds, 10 bits of node and 12 bits of sequence. The low bits of the sequence name a lane, one per
+ * engine shard, and each lane keeps its own clock, so the shard that owns an entity can be read back from its id.
+ */
+@Component
+public class SnowflakeIdGenerator implements IdGenerator {
+    private static final long EPOCH_MILLIS = 1_704_067_200_000L;
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final int MAX_LANE_BITS = 8;
+    private static final long MAX_NODE = (1L << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private final long nodeBits;
+    private final int laneBits;
+    private final long laneMask;
+    private final AtomicLong[] clocks;
+
+    public SnowflakeIdGenerator(long node, int nodes) {
+        this(node, nodes, 1);
+    }
+
+    @Autowired
+    public SnowflakeIdGenerator(@Value("${opd.id.node:-1}") long node, @Value("${opd.id.nodes:1}") int nodes,
+                                @Value("${opd.engine.shards:0}") int shards) {
+        if (nodes < 1 || nodes > MAX_NODE + 1) {
+            throw new IllegalArgumentException("opd.id.nodes must be between 1 and " + (MAX_NODE + 1));
+        }
+        if (node < 0 && nodes > 1) {
+            throw new IllegalStateException("opd.id.node must be set explicitly when opd.id.nodes is " + nodes
+                    + "; nodes sharing a default id would generate colliding ids");
+        }
+        long resolved = node < 0 ? 0 : node;
+        if (resolved >= nodes && nodes > 1 || resolved > MAX_NODE) {
+            throw new IllegalArgumentException("opd.id.node must be between 0 and "
+                    + (nodes > 1 ? nodes - 1 : MAX_NODE));
+        }
+        int lanes = EngineShards.resolveCount(shards);
+        if (lanes > 1 << MAX_LANE_BITS) {
+            throw new IllegalArgumentException("opd.engine.shards must be at most " + (1 << MAX_LANE_BITS));
+        }
+        this.nodeBits = resolved << SEQUENCE_BITS;
+        this.laneBits = 32 - Integer.numberOfLeadingZeros(lanes - 1);
+        this.laneMask = (1L << laneBits) - 1;
+        this.clocks = new AtomicLong[lanes];
+        for (int i = 0; i < lanes; i++) {
+            clocks[i] = new AtomicLong();
+        }
+    }
+
+    @Override
+    public long nextId() {
+        return nextId(0);
+    }
+
+    @Override
+    public long nextId(int lane) {
+        AtomicLong clock = clocks[lane];
+        int counterBits = SEQUENCE_BITS - laneBits;
+        while (true) {
+            long now = (System.currentTimeMillis() - EPOCH_MILLIS) << counterBits;
+            long previous = clock.get();
+            long next = now > previous ? now : previous + 1;
+            if (clock.compareAndSet(previous, next)) {
+                long millis = next >>> counterBits;
+                long sequence = (next & ((1L << counterBits) - 1)) << laneBits | lane;
+                return (millis << (NODE_BITS + SEQUENCE_BITS)) | nodeBits | sequence;
+            }
+        }
+    }
+
+    @Override
+    public int lanes() {
+        return clocks.length;
+    }
+
+    @Override
+    public int laneOf(long id) {
+        return (int) (id & laneMask);
+    }
+
+    @Override
+    public void advancePast(long id) {
+        int counterBits = SEQUENCE_BITS - laneBits;
+        long floor = ((id >>> (NODE_BITS + SEQUENCE_BITS)) << counterBits) | ((id & SEQUENCE_MASK) >>> laneBits);
+        for (AtomicLong clock : clocks) {
+            clock.accumulateAndGet(floor, Math::max);
+        }
+    }
+}
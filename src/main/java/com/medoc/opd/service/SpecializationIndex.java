@@ -0,0 +1,149 @@
+package com.medoc.opd.service;
+
+import com.medoc.opd.model.Doctor;
+import com.medoc.opd.model.OpdEvent;
+import com.medoc.opd.model.OpdSlot;
+import com.medoc.opd.model.Token;
+import com.medoc.opd.model.TokenSource;
+import com.medoc.opd.repository.DoctorRepository;
+import com.medoc.opd.repository.SlotRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+@Service
+public class SpecializationIndex {
+    private static final int LEVELS = TokenSource.values().length;
+
+    private final DoctorRepository doctorRepository;
+    private final SlotRepository slotRepository;
+    private final EngineShards engineShards;
+    private final Map<String, NavigableSet<Entry>[]> bySpecialization = new ConcurrentHashMap<>();
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    public SpecializationIndex(DoctorRepository doctorRepository, SlotRepository slotRepository,
+                               EngineShards engineShards) {
+        this.doctorRepository = doctorRepository;
+        this.slotRepository = slotRepository;
+        this.engineShards = engineShards;
+    }
+
+    public Optional<Entry> findEarliest(String specialization, TokenSource source, LocalDate date) {
+        NavigableSet<Entry>[] levels = bySpecialization.get(normalize(specialization));
+        if (levels == null) {
+            return Optional.empty();
+        }
+        Entry earliest = levels[source.getPriorityLevel() - 1].ceiling(Entry.startOf(date));
+        return earliest != null && earliest.date().equals(date) ? Optional.of(earliest) : Optional.empty();
+    }
+
+    public boolean admits(String slotId, TokenSource source) {
+        Entry entry = entries.get(slotId);
+        return entry != null && source.getPriorityLevel() <= entry.admitLevel();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        engineShards.lockAll();
+        try {
+            for (Doctor doctor : doctorRepository.findAll()) {
+                slotRepository.findByDoctorId(doctor.getId()).forEach(this::refresh);
+            }
+        } finally {
+            engineShards.unlockAll();
+        }
+    }
+
+    @EventListener
+    public void onEvent(OpdEvent event) {
+        refresh(event.getSlotId());
+        refresh(event.getFromSlotId());
+    }
+
+    private void refresh(String slotId) {
+        if (slotId == null) {
+            return;
+        }
+        Optional<OpdSlot> slot = slotRepository.findById(slotId);
+        if (slot.isPresent()) {
+            refresh(slot.get());
+        } else {
+            Entry previous = entries.remove(slotId);
+            if (previous != null) {
+                unindex(previous);
+            }
+        }
+    }
+
+    private void refresh(OpdSlot slot) {
+        Optional<Doctor> doctor = doctorRepository.findById(slot.getDoctorId());
+        if (doctor.isEmpty() || doctor.get().getSpecialization() == null) {
+            return;
+        }
+        Entry entry = new Entry(normalize(doctor.get().getSpecialization()), slot.getDate(), slot.getStartTime(),
+                slot.getId(), slot.getDoctorId(), admitLevel(slot));
+        Entry previous = entries.put(slot.getId(), entry);
+        if (entry.equals(previous)) {
+            return;
+        }
+        if (previous != null) {
+            unindex(previous);
+        }
+        NavigableSet<Entry>[] levels = bySpecialization.computeIfAbsent(entry.specialization(), k -> newLevels());
+        for (int level = 0; level < entry.admitLevel(); level++) {
+            levels[level].add(entry);
+        }
+    }
+
+    private void unindex(Entry entry) {
+        NavigableSet<Entry>[] levels = bySpecialization.get(entry.specialization());
+        for (int level = 0; level < entry.admitLevel(); level++) {
+            levels[level].remove(entry);
+        }
+    }
+
+    private static int admitLevel(OpdSlot slot) {
+        if (slot.getQueue().occupiedCount() < slot.getMaxCapacity()) {
+            return LEVELS;
+        }
+        Token lowest = slot.getQueue().peekLowestActive();
+        if (lowest == null) {
+            return 0;
+        }
+        return lowest.getSource() == null ? LEVELS : lowest.getSource().getPriorityLevel() - 1;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static NavigableSet<Entry>[] newLevels() {
+        NavigableSet<Entry>[] levels = new NavigableSet[LEVELS];
+        for (int i = 0; i < LEVELS; i++) {
+            levels[i] = new ConcurrentSkipListSet<>(Entry.ORDER);
+        }
+        return levels;
+    }
+
+    private static String normalize(String specialization) {
+        return specialization.trim().toLowerCase(Locale.ROOT);
+    }
+
+    public record Entry(String specialization, LocalDate date, LocalTime startTime, String slotId, String doctorId,
+                        int admitLevel) {
+        private static final Comparator<Entry> ORDER = Comparator.comparing(Entry::date)
+                .thenComparing(Entry::startTime)
+                .thenComparing(Entry::slotId);
+
+        private static Entry startOf(LocalDate date) {
+            return new Entry(null, date, LocalTime.MIN, "", null, 0);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.medoc.opd.config;
+
+import com.medoc.opd.OpdTokenEngineApplication;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class VirtualThreadsConfigTest {
+
+    @Test
+    @EnabledForJreRange(max = JRE.JAVA_20)
+    void virtualThreadsOnAPreJava21RuntimeFailStartup() {
+        assertThatThrownBy(() -> new SpringApplicationBuilder(OpdTokenEngineApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.main.banner-mode=off",
+                        "--logging.level.root=OFF",
+                        "--spring.threads.virtual.enabled=true"))
+                .hasRootCauseInstanceOf(IllegalStateException.class)
+                .rootCause()
+                .hasMessageContaining("Java 21");
+    }
+}
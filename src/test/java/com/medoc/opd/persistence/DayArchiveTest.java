@@ -0,0 +1,87 @@
+package com.medoc.opd.persistence;
+
+import com.medoc.opd.OpdTokenEngineApplication;
+import com.medoc.opd.model.OpdEvent;
+import com.medoc.opd.model.OpdEventType;
+import com.medoc.opd.model.OpdSlot;
+import com.medoc.opd.model.Token;
+import com.medoc.opd.model.TokenSource;
+import com.medoc.opd.model.TokenStatus;
+import com.medoc.opd.repository.TokenRepository;
+import com.medoc.opd.service.OpdService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.PayloadApplicationEvent;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DayArchiveTest {
+    private static final LocalDate DAY = LocalDate.of(2030, 1, 7);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void closedDayArchivesUnseenPatientsAsNoShowAndStaysEvictedAfterRestart() throws Exception {
+        String doctorId;
+        Token seen;
+        Token unseen;
+        try (ConfigurableApplicationContext context = start()) {
+            OpdService service = context.getBean(OpdService.class);
+            List<OpdEvent> events = new CopyOnWriteArrayList<>();
+            context.addApplicationListener((ApplicationListener<PayloadApplicationEvent<OpdEvent>>)
+                    event -> events.add(event.getPayload()));
+
+            doctorId = service.onboardDoctor("Archive", "Dermatology").getId();
+            service.createSlot(doctorId, DAY, LocalTime.of(9, 0), LocalTime.of(10, 0), 3);
+            seen = service.bookToken("Asha", TokenSource.ONLINE, doctorId, DAY);
+            unseen = service.bookToken("Bala", TokenSource.WALK_IN, doctorId, DAY);
+            service.completeToken(seen.getId());
+
+            assertThat(context.getBean(DayArchive.class).closeDaysBefore(DAY.plusDays(1))).isEqualTo(1);
+
+            assertThat(events).anySatisfy(event -> {
+                assertThat(event.getType()).isEqualTo(OpdEventType.TOKEN_NO_SHOW);
+                assertThat(event.getTokenId()).isEqualTo(unseen.getId());
+            });
+            TokenRepository tokens = context.getBean(TokenRepository.class);
+            assertThat(tokens.findById(seen.getId())).isEmpty();
+            assertThat(tokens.findById(unseen.getId())).isEmpty();
+        }
+
+        try (ConfigurableApplicationContext context = start()) {
+            TokenRepository tokens = context.getBean(TokenRepository.class);
+            assertThat(tokens.findById(seen.getId())).isEmpty();
+            assertThat(tokens.findById(unseen.getId())).isEmpty();
+
+            List<OpdSlot> archived = context.getBean(OpdService.class).getDoctorSlots(doctorId, DAY);
+            assertThat(archived).hasSize(1);
+            assertThat(archived.get(0).getTokens())
+                    .filteredOn(token -> token.getId().equals(unseen.getId()))
+                    .extracting(Token::getStatus)
+                    .containsExactly(TokenStatus.NO_SHOW);
+        }
+    }
+
+    private ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(OpdTokenEngineApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.main.banner-mode=off",
+                        "--logging.level.com.medoc.opd=ERROR",
+                        "--opd.persistence.enabled=true",
+                        "--opd.persistence.dir=" + directory.resolve("journal"),
+                        "--opd.persistence.snapshot-interval-ms=3600000",
+                        "--opd.archive.enabled=true",
+                        "--opd.archive.dir=" + directory.resolve("archive"));
+    }
+}
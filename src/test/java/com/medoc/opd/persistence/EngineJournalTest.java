@@ -0,0 +1,117 @@
+package com.medoc.opd.persistence;
+
+import com.medoc.opd.OpdTokenEngineApplication;
+import com.medoc.opd.model.OpdSlot;
+import com.medoc.opd.model.Token;
+import com.medoc.opd.model.TokenSource;
+import com.medoc.opd.model.TokenStatus;
+import com.medoc.opd.repository.TokenRepository;
+import com.medoc.opd.service.CommitBarrier;
+import com.medoc.opd.service.EngineReadOnlyException;
+import com.medoc.opd.service.OpdService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EngineJournalTest {
+    private static final LocalDate DAY = LocalDate.of(2030, 1, 7);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void restartRecoversSnapshotPlusJournalTail() throws Exception {
+        String doctorId;
+        String firstSlotId;
+        String secondSlotId;
+        Token completed;
+        Token cancelled;
+        Token noShow;
+        Token lateBooking;
+        try (ConfigurableApplicationContext context = start()) {
+            OpdService service = context.getBean(OpdService.class);
+            doctorId = service.onboardDoctor("Journal", "Cardiology").getId();
+            firstSlotId = service.createSlot(doctorId, DAY, LocalTime.of(9, 0), LocalTime.of(10, 0), 3).getId();
+            secondSlotId = service.createSlot(doctorId, DAY, LocalTime.of(10, 0), LocalTime.of(11, 0), 3).getId();
+            completed = service.bookToken("Asha", TokenSource.ONLINE, doctorId, DAY);
+            cancelled = service.bookToken("Bala", TokenSource.WALK_IN, doctorId, DAY);
+            noShow = service.bookToken("Chitra", TokenSource.FOLLOW_UP, doctorId, DAY);
+            service.completeToken(completed.getId());
+            service.cancelToken(cancelled.getId());
+
+            context.getBean(EngineJournal.class).snapshot();
+
+            service.toggleNoShow(noShow.getId());
+            lateBooking = service.bookToken("Dinesh", TokenSource.PAID_PREMIUM, doctorId, DAY);
+            service.resizeSlot(secondSlotId, 5);
+            service.delaySlot(firstSlotId, 15);
+        }
+
+        try (ConfigurableApplicationContext context = start()) {
+            OpdService service = context.getBean(OpdService.class);
+            TokenRepository tokens = context.getBean(TokenRepository.class);
+            List<OpdSlot> slots = service.getDoctorSlots(doctorId, DAY);
+
+            assertThat(slots).extracting(OpdSlot::getId).containsExactly(firstSlotId, secondSlotId);
+            OpdSlot first = slots.get(0);
+            assertThat(first.getStartTime()).isEqualTo(LocalTime.of(9, 15));
+            assertThat(first.getQueue().completedCount()).isEqualTo(1);
+            assertThat(first.getTokens()).extracting(Token::getId)
+                    .containsExactlyInAnyOrder(completed.getId(), noShow.getId(), lateBooking.getId());
+            assertThat(slots.get(1).getMaxCapacity()).isEqualTo(5);
+
+            assertThat(status(tokens, completed)).isEqualTo(TokenStatus.COMPLETED);
+            assertThat(status(tokens, cancelled)).isEqualTo(TokenStatus.CANCELLED);
+            assertThat(status(tokens, noShow)).isEqualTo(TokenStatus.NO_SHOW);
+            assertThat(status(tokens, lateBooking)).isEqualTo(TokenStatus.ACTIVE);
+            assertThat(tokens.findById(lateBooking.getId()).orElseThrow().getGlobalOrder())
+                    .isEqualTo(lateBooking.getGlobalOrder());
+        }
+    }
+
+    @Test
+    void journalFailureSwitchesToReadOnlyInsteadOfFailingListeners() {
+        try (ConfigurableApplicationContext context = start("--opd.persistence.segment-size=128")) {
+            OpdService service = context.getBean(OpdService.class);
+            String doctorId = service.onboardDoctor("Journal", "Cardiology").getId();
+            service.createSlot(doctorId, DAY, LocalTime.of(9, 0), LocalTime.of(10, 0), 3);
+
+            assertThatThrownBy(() -> service.bookToken("P".repeat(200), TokenSource.ONLINE, doctorId, DAY))
+                    .isInstanceOf(EngineReadOnlyException.class);
+
+            assertThat(context.getBean(CommitBarrier.class).isReadOnly()).isTrue();
+            assertThat(context.getBean(TokenRepository.class).findAll())
+                    .extracting(Token::getPatientName)
+                    .containsExactly("P".repeat(200));
+            assertThatThrownBy(() -> service.onboardDoctor("Later", "Cardiology"))
+                    .isInstanceOf(EngineReadOnlyException.class);
+        }
+    }
+
+    private ConfigurableApplicationContext start(String... extraArgs) {
+        List<String> args = new ArrayList<>(List.of("--spring.main.banner-mode=off",
+                "--logging.level.com.medoc.opd=ERROR",
+                "--opd.persistence.enabled=true",
+                "--opd.persistence.dir=" + directory,
+                "--opd.persistence.snapshot-interval-ms=3600000"));
+        args.addAll(List.of(extraArgs));
+        return new SpringApplicationBuilder(OpdTokenEngineApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(args.toArray(String[]::new));
+    }
+
+    private static TokenStatus status(TokenRepository tokens, Token token) {
+        return tokens.findById(token.getId()).orElseThrow().getStatus();
+    }
+}
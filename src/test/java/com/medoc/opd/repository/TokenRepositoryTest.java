@@ -0,0 +1,135 @@
+package com.medoc.opd.repository;
+
+import com.medoc.opd.model.OpdEvent;
+import com.medoc.opd.model.OpdEventType;
+import com.medoc.opd.model.Token;
+import com.medoc.opd.model.TokenSource;
+import com.medoc.opd.model.TokenStatus;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenRepositoryTest {
+    private final TokenRepository repository = new TokenRepository();
+    private long ids = 1_000;
+
+    @Test
+    void savedTokensAreFoundByPatientStatusAndSlot() {
+        Token ann = save("Ann", "s1");
+        Token bob = save("Bob", "s1");
+        Token annAgain = save(" ANN ", "s2");
+
+        assertThat(repository.findByPatientName("ann")).containsExactlyInAnyOrder(ann, annAgain);
+        assertThat(repository.findBySlotId("s1")).containsExactlyInAnyOrder(ann, bob);
+        assertThat(repository.findByStatus(TokenStatus.ACTIVE)).containsExactlyInAnyOrder(ann, bob, annAgain);
+        assertThat(repository.findByPatientName("nobody")).isEmpty();
+    }
+
+    @Test
+    void inPlaceTransitionsAreReindexedFromEngineEvents() {
+        Token token = save("Cara", "s1");
+
+        token.setStatus(TokenStatus.NO_SHOW);
+        repository.onEvent(OpdEvent.forToken(OpdEventType.TOKEN_NO_SHOW, "d", token, null));
+        assertThat(repository.findByStatus(TokenStatus.ACTIVE)).isEmpty();
+        assertThat(repository.findByStatus(TokenStatus.NO_SHOW)).containsExactly(token);
+
+        token.setStatus(TokenStatus.ACTIVE);
+        token.setAssignedSlotId("s2");
+        repository.onEvent(OpdEvent.forToken(OpdEventType.TOKEN_BUMPED, "d", token, "s1"));
+        assertThat(repository.findBySlotId("s1")).isEmpty();
+        assertThat(repository.findBySlotId("s2")).containsExactly(token);
+        assertThat(repository.findByStatus(TokenStatus.ACTIVE)).containsExactly(token);
+    }
+
+    @Test
+    void finishedTokensLeaveTheLiveIndexesButStayFindableByPatientStatusAndSlot() {
+        Token cancelled = save("Dev", "s1");
+        Token completed = save("dev", "s2");
+        Token live = save("Dev", "s3");
+
+        cancelled.setStatus(TokenStatus.CANCELLED);
+        cancelled.setAssignedSlotId(null);
+        repository.save(cancelled);
+        completed.setStatus(TokenStatus.COMPLETED);
+        repository.save(completed);
+
+        assertThat(repository.findBySlotId("s1")).isEmpty();
+        assertThat(ids(repository.findBySlotId("s2"))).containsExactly(completed.getId());
+        assertThat(repository.findByStatus(TokenStatus.ACTIVE)).containsExactly(live);
+        assertThat(ids(repository.findByStatus(TokenStatus.CANCELLED))).containsExactly(cancelled.getId());
+        assertThat(ids(repository.findByStatus(TokenStatus.COMPLETED))).containsExactly(completed.getId());
+        assertThat(ids(repository.findByPatientName("DEV")))
+                .containsExactlyInAnyOrder(cancelled.getId(), completed.getId(), live.getId());
+    }
+
+    @Test
+    void deletedTokensDropOutOfEveryIndex() {
+        Token live = save("Eve", "s1");
+        Token finished = save("Eve", "s1");
+        finished.setStatus(TokenStatus.COMPLETED);
+        repository.save(finished);
+        Token kept = save("Eve", "s1");
+
+        repository.deleteAll(List.of(live.getId(), finished.getId()));
+
+        assertThat(repository.findByPatientName("eve")).containsExactly(kept);
+        assertThat(repository.findBySlotId("s1")).containsExactly(kept);
+        assertThat(repository.findByStatus(TokenStatus.COMPLETED)).isEmpty();
+    }
+
+    @Test
+    void finishedRowsMoveBetweenStatusAndSlotIndexesWhenRewritten() {
+        Token token = save("Fay", "s1");
+        token.setStatus(TokenStatus.COMPLETED);
+        repository.save(token);
+
+        token.setStatus(TokenStatus.CANCELLED);
+        token.setAssignedSlotId(null);
+        repository.save(token);
+
+        assertThat(repository.findByStatus(TokenStatus.COMPLETED)).isEmpty();
+        assertThat(ids(repository.findByStatus(TokenStatus.CANCELLED))).containsExactly(token.getId());
+        assertThat(repository.findBySlotId("s1")).isEmpty();
+        assertThat(repository.findFinishedInSlots(List.of("s1"))).isEmpty();
+    }
+
+    @Test
+    void finishedTokensWithIdsThatDoNotPackAreKeptVerbatim() {
+        List<String> tokenIds = List.of("token-0", "not_base36", "00a1", "ZZ", "0",
+                "123E4567-E89B-12D3-A456-426614174000");
+        for (String id : tokenIds) {
+            Token token = new Token(id, "Gia", TokenSource.ONLINE);
+            token.setAssignedSlotId("slot-9");
+            token.setStatus(TokenStatus.COMPLETED);
+            repository.save(token);
+        }
+
+        for (String id : tokenIds) {
+            assertThat(repository.findById(id)).hasValueSatisfying(token -> {
+                assertThat(token.getId()).isEqualTo(id);
+                assertThat(token.getAssignedSlotId()).isEqualTo("slot-9");
+            });
+        }
+        assertThat(ids(repository.findBySlotId("slot-9"))).containsExactlyInAnyOrderElementsOf(tokenIds);
+
+        repository.deleteAll(List.of("token-0", "00a1"));
+
+        assertThat(repository.findById("token-0")).isEmpty();
+        assertThat(repository.findById("00a1")).isEmpty();
+        assertThat(ids(repository.findByStatus(TokenStatus.COMPLETED)))
+                .containsExactlyInAnyOrder("not_base36", "ZZ", "0", "123E4567-E89B-12D3-A456-426614174000");
+    }
+
+    private Token save(String patientName, String slotId) {
+        Token token = new Token(Long.toString(ids++, Character.MAX_RADIX), patientName, TokenSource.ONLINE);
+        token.setAssignedSlotId(slotId);
+        return repository.save(token);
+    }
+
+    private static List<String> ids(List<Token> tokens) {
+        return tokens.stream().map(Token::getId).toList();
+    }
+}
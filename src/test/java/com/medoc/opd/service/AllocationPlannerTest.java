@@ -0,0 +1,120 @@
+package com.medoc.opd.service;
+
+import com.medoc.opd.model.OpdSlot;
+import com.medoc.opd.model.Token;
+import com.medoc.opd.model.TokenSource;
+import com.medoc.opd.model.TokenStatus;
+import com.medoc.opd.repository.SlotRepository;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AllocationPlannerTest {
+    private static final LocalDate DAY = LocalDate.of(2030, 1, 7);
+
+    private final SlotRepository slotRepository = new SlotRepository();
+    private int ids;
+
+    @Test
+    void batchKeepsDisplacingOncePlanHasPassedTheDepthInTotal() {
+        AllocationPlanner planner = new AllocationPlanner(slotRepository, 2);
+        OpdSlot slot = slot(9, 3);
+        List<Token> walkIns = fill(slot, TokenSource.WALK_IN, 3);
+        List<Token> online = tokens(TokenSource.ONLINE, 3);
+
+        AllocationPlan plan = planner.planBooking(online, List.of(slot));
+        planner.apply(plan);
+
+        assertThat(plan.getUnplaced()).isEmpty();
+        assertThat(plan.isTruncated()).isFalse();
+        assertThat(slot.getTokens()).containsExactlyInAnyOrderElementsOf(online);
+        assertThat(walkIns).allMatch(t -> t.getStatus() == TokenStatus.CANCELLED && t.getAssignedSlotId() == null);
+    }
+
+    @Test
+    void singleBookingsEachStartTheirOwnChain() {
+        AllocationPlanner planner = new AllocationPlanner(slotRepository, 1);
+        OpdSlot first = slot(9, 3);
+        OpdSlot second = slot(10, 3);
+        fill(first, TokenSource.WALK_IN, 3);
+
+        for (Token incoming : tokens(TokenSource.ONLINE, 3)) {
+            AllocationPlan plan = planner.planBooking(List.of(incoming), List.of(first, second));
+            planner.apply(plan);
+            assertThat(plan.isPlaced(incoming)).isTrue();
+            assertThat(incoming.getAssignedSlotId()).isEqualTo(first.getId());
+        }
+        assertThat(second.getTokens()).extracting(Token::getSource).containsOnly(TokenSource.WALK_IN).hasSize(3);
+    }
+
+    @Test
+    void chainLongerThanMaxDepthOnlyTakesFreeCapacity() {
+        OpdSlot a = slot(9, 1);
+        OpdSlot b = slot(10, 1);
+        OpdSlot c = slot(11, 1);
+        OpdSlot d = slot(12, 1);
+        Token followUp = fill(a, TokenSource.FOLLOW_UP, 1).get(0);
+        Token online = fill(b, TokenSource.ONLINE, 1).get(0);
+        Token walkIn = fill(c, TokenSource.WALK_IN, 1).get(0);
+        Token emergency = tokens(TokenSource.EMERGENCY, 1).get(0);
+
+        AllocationPlanner planner = new AllocationPlanner(slotRepository, 2);
+        AllocationPlan plan = planner.planBooking(List.of(emergency), List.of(a, b, c, d));
+        planner.apply(plan);
+
+        assertThat(plan.isTruncated()).isTrue();
+        assertThat(emergency.getAssignedSlotId()).isEqualTo(a.getId());
+        assertThat(followUp.getAssignedSlotId()).isEqualTo(b.getId());
+        assertThat(walkIn.getAssignedSlotId()).isEqualTo(c.getId());
+        assertThat(online.getAssignedSlotId()).isEqualTo(d.getId());
+    }
+
+    @Test
+    void chainWithinMaxDepthCascadesToTheEnd() {
+        OpdSlot a = slot(9, 1);
+        OpdSlot b = slot(10, 1);
+        OpdSlot c = slot(11, 1);
+        OpdSlot d = slot(12, 1);
+        fill(a, TokenSource.FOLLOW_UP, 1);
+        fill(b, TokenSource.ONLINE, 1);
+        Token walkIn = fill(c, TokenSource.WALK_IN, 1).get(0);
+
+        AllocationPlanner planner = new AllocationPlanner(slotRepository, 3);
+        AllocationPlan plan = planner.planBooking(tokens(TokenSource.EMERGENCY, 1), List.of(a, b, c, d));
+        planner.apply(plan);
+
+        assertThat(plan.isTruncated()).isFalse();
+        assertThat(plan.getDisplacements()).isEqualTo(3);
+        assertThat(plan.getMaxChainDepth()).isEqualTo(3);
+        assertThat(walkIn.getAssignedSlotId()).isEqualTo(d.getId());
+    }
+
+    private OpdSlot slot(int hour, int capacity) {
+        OpdSlot slot = new OpdSlot("slot-" + hour, "doctor", DAY, LocalTime.of(hour, 0), LocalTime.of(hour + 1, 0),
+                capacity);
+        slotRepository.save(slot);
+        return slot;
+    }
+
+    private List<Token> fill(OpdSlot slot, TokenSource source, int count) {
+        List<Token> residents = tokens(source, count);
+        for (Token token : residents) {
+            slot.getQueue().add(token);
+            token.setAssignedSlotId(slot.getId());
+        }
+        return residents;
+    }
+
+    private List<Token> tokens(TokenSource source, int count) {
+        List<Token> tokens = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            tokens.add(new Token("token-" + ids++, "Patient " + ids, source));
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,108 @@
+package com.medoc.opd.service;
+
+import com.medoc.opd.model.TokenSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BookingAdmissionTest {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void reservedSourcesUseSharedPermitsFirstAndFallBackToTheReserve() {
+        BookingAdmission admission = admission(4, 50);
+
+        admission.admit(TokenSource.PAID_PREMIUM);
+        assertThat(available("shared")).isEqualTo(2);
+        assertThat(available("reserved")).isEqualTo(1);
+
+        admission.admit(TokenSource.ONLINE);
+        admission.admit(TokenSource.ONLINE);
+        admission.admit(TokenSource.PAID_PREMIUM);
+        assertThat(available("reserved")).isZero();
+
+        assertThatThrownBy(() -> admission.admit(TokenSource.WALK_IN)).isInstanceOf(AdmissionRejectedException.class);
+        assertThatThrownBy(() -> admission.admit(TokenSource.PAID_PREMIUM))
+                .isInstanceOf(AdmissionRejectedException.class);
+    }
+
+    @Test
+    void emergencyIsAdmittedEvenWhenEveryPermitIsTaken() {
+        BookingAdmission admission = admission(2, 50);
+        admission.admit(TokenSource.ONLINE);
+        admission.admit(TokenSource.PAID_PREMIUM);
+
+        BookingAdmission.Permit permit = admission.admit(TokenSource.EMERGENCY);
+        permit.close();
+
+        assertThat(registry.get("opd.admission.overdraft").counter().count()).isEqualTo(1);
+        assertThat(available("shared")).isZero();
+        assertThat(available("reserved")).isZero();
+    }
+
+    @Test
+    void freedPermitGoesToTheMostUrgentWaitingLane() throws Exception {
+        BookingAdmission admission = admission(4, 5_000);
+        List<BookingAdmission.Permit> held = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            held.add(admission.admit(TokenSource.ONLINE));
+        }
+        List<TokenSource> order = new ArrayList<>();
+        ExecutorService waiters = Executors.newFixedThreadPool(2);
+        try {
+            CompletableFuture<?> walkIn = waitFor(waiters, admission, TokenSource.WALK_IN, order);
+            awaitQueued(TokenSource.WALK_IN);
+            CompletableFuture<?> followUp = waitFor(waiters, admission, TokenSource.FOLLOW_UP, order);
+            awaitQueued(TokenSource.FOLLOW_UP);
+
+            held.get(0).close();
+            followUp.get(5, TimeUnit.SECONDS);
+            assertThat(walkIn).isNotDone();
+
+            held.get(1).close();
+            walkIn.get(5, TimeUnit.SECONDS);
+            assertThat(order).containsExactly(TokenSource.FOLLOW_UP, TokenSource.WALK_IN);
+        } finally {
+            waiters.shutdownNow();
+        }
+    }
+
+    private BookingAdmission admission(int maxConcurrent, long queueTimeoutMillis) {
+        return new BookingAdmission(registry, true, maxConcurrent, 25, 10, queueTimeoutMillis, 1);
+    }
+
+    private static CompletableFuture<?> waitFor(ExecutorService executor, BookingAdmission admission,
+                                                TokenSource source, List<TokenSource> order) {
+        return CompletableFuture.runAsync(() -> {
+            admission.admit(source);
+            synchronized (order) {
+                order.add(source);
+            }
+        }, executor);
+    }
+
+    private void awaitQueued(TokenSource source) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (queueDepth(source) < 1 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(queueDepth(source)).isEqualTo(1);
+    }
+
+    private double queueDepth(TokenSource source) {
+        return registry.get("opd.admission.queue.depth").tag("source", source.name()).gauge().value();
+    }
+
+    private double available(String pool) {
+        return registry.get("opd.admission.permits.available").tag("pool", pool).gauge().value();
+    }
+}
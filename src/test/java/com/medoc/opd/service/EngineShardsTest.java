@@ -0,0 +1,69 @@
+package com.medoc.opd.service;
+
+import com.medoc.opd.model.Token;
+import com.medoc.opd.model.TokenSource;
+import com.medoc.opd.model.TokenStatus;
+import com.medoc.opd.repository.TokenRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EngineShardsTest {
+    private final EngineShards shards = new EngineShards(new SnowflakeIdGenerator(0, 1, 8), new CommitBarrier(), 8, 10);
+
+    @Test
+    void doctorsAreDealtEvenlyAndTheirIdsRouteToTheDoctorsShard() {
+        Map<Integer, Integer> doctorsPerShard = new HashMap<>();
+        for (int i = 0; i < 32; i++) {
+            String doctorId = shards.newDoctorKey();
+            int shard = shards.shardOf(doctorId);
+            doctorsPerShard.merge(shard, 1, Integer::sum);
+            for (int n = 0; n < 10; n++) {
+                assertThat(shards.shardOf(shards.newKeyFor(doctorId))).isEqualTo(shard);
+            }
+        }
+        assertThat(doctorsPerShard).hasSize(8).allSatisfy((shard, count) -> assertThat(count).isEqualTo(4));
+        assertThat(shards.shardOf("3f2504e0-4f89-11d3-9a0c-0305e82c3301")).isBetween(0, 7);
+    }
+
+    @Test
+    void generatorMustHaveALanePerShard() {
+        assertThatThrownBy(() -> new EngineShards(new SnowflakeIdGenerator(0, 1, 4), new CommitBarrier(), 8, 10))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void partitionedTokensAreStillFoundByCrossDoctorQueries() {
+        TokenRepository repository = new TokenRepository(shards);
+        String first = shards.newDoctorKey();
+        String second = shards.newDoctorKey();
+        String firstSlot = shards.newKeyFor(first);
+        String secondSlot = shards.newKeyFor(second);
+        assertThat(shards.shardOf(first)).isNotEqualTo(shards.shardOf(second));
+        Token a = book(repository, first, firstSlot, "Ann");
+        Token b = book(repository, second, secondSlot, "ann");
+        Token c = book(repository, second, secondSlot, "Bob");
+        c.setStatus(TokenStatus.COMPLETED);
+        repository.save(c);
+
+        assertThat(repository.findBySlotId(firstSlot)).containsExactly(a);
+        assertThat(repository.findBySlotId(secondSlot)).extracting(Token::getId)
+                .containsExactlyInAnyOrder(b.getId(), c.getId());
+        assertThat(repository.findByPatientName("ANN")).containsExactlyInAnyOrder(a, b);
+        assertThat(repository.findByStatus(TokenStatus.ACTIVE)).containsExactlyInAnyOrder(a, b);
+        assertThat(repository.findById(c.getId())).hasValueSatisfying(
+                token -> assertThat(token.getStatus()).isEqualTo(TokenStatus.COMPLETED));
+        assertThat(repository.liveCount()).isEqualTo(2);
+        assertThat(repository.finishedCount()).isEqualTo(1);
+    }
+
+    private Token book(TokenRepository repository, String doctorId, String slotId, String patientName) {
+        Token token = new Token(shards.newKeyFor(doctorId), patientName, TokenSource.ONLINE);
+        token.setAssignedSlotId(slotId);
+        return repository.save(token);
+    }
+}
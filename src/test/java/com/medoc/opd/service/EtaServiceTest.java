@@ -0,0 +1,75 @@
+package com.medoc.opd.service;
+
+import com.medoc.opd.model.OpdEvent;
+import com.medoc.opd.model.OpdEventType;
+import com.medoc.opd.model.OpdSlot;
+import com.medoc.opd.model.Token;
+import com.medoc.opd.model.TokenSource;
+import com.medoc.opd.repository.DoctorRepository;
+import com.medoc.opd.repository.SlotRepository;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EtaServiceTest {
+    private static final LocalDate DAY = LocalDate.of(2030, 1, 7);
+
+    private final SlotRepository slotRepository = new SlotRepository();
+    private final EngineShards shards = new EngineShards(new SnowflakeIdGenerator(0, 1, 8), new CommitBarrier(), 8, 10);
+    private final EtaService etaService = new EtaService(new DoctorRepository(), slotRepository, shards, 10, 0.2, 60);
+    private int ids;
+
+    @Test
+    void backlogInEarlierSlotsOfTheDayDelaysLaterSlots() {
+        OpdSlot early = slot(9, 8);
+        OpdSlot late = slot(10, 2);
+        OpdSlot otherDay = slot(DAY.minusDays(1), 8, 5);
+        fill(otherDay, 5);
+        fill(early, 8);
+        Token second = fill(late, 2).get(1);
+
+        EtaService.TokenEta eta = etaService.etaFor(second.getId());
+
+        assertThat(eta.patientsAhead()).isEqualTo(9);
+        assertThat(eta.estimatedStart()).isEqualTo(DAY.atTime(10, 30));
+    }
+
+    @Test
+    void clearedEarlierSlotsLeaveTheSlotStartUntouched() {
+        fill(slot(9, 2), 1);
+        Token first = fill(slot(10, 2), 1).get(0);
+
+        EtaService.TokenEta eta = etaService.etaFor(first.getId());
+
+        assertThat(eta.patientsAhead()).isEqualTo(1);
+        assertThat(eta.estimatedStart()).isEqualTo(DAY.atTime(10, 0));
+    }
+
+    private OpdSlot slot(int hour, int capacity) {
+        return slot(DAY, hour, capacity);
+    }
+
+    private OpdSlot slot(LocalDate date, int hour, int capacity) {
+        OpdSlot slot = new OpdSlot("slot" + date.getDayOfMonth() + "h" + hour, "doctor", date,
+                LocalTime.of(hour, 0), LocalTime.of(hour + 1, 0), capacity);
+        slotRepository.save(slot);
+        return slot;
+    }
+
+    private List<Token> fill(OpdSlot slot, int count) {
+        List<Token> tokens = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Token token = new Token("t" + ids++, "Patient " + ids, TokenSource.ONLINE);
+            token.setAssignedSlotId(slot.getId());
+            slot.getQueue().add(token);
+            tokens.add(token);
+        }
+        etaService.onEvent(OpdEvent.forSlot(OpdEventType.SLOT_CREATED, slot));
+        return tokens;
+    }
+}
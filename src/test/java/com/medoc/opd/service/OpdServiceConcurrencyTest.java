@@ -0,0 +1,213 @@
+package com.medoc.opd.service;
+
+import com.medoc.opd.model.BookingItem;
+import com.medoc.opd.model.BookingResult;
+import com.medoc.opd.model.OpdSlot;
+import com.medoc.opd.model.Token;
+import com.medoc.opd.model.TokenSource;
+import com.medoc.opd.model.TokenStatus;
+import com.medoc.opd.repository.SlotRepository;
+import com.medoc.opd.repository.TokenRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE,
+        properties = "logging.level.com.medoc.opd=ERROR")
+class OpdServiceConcurrencyTest {
+    private static final LocalDate DAY = LocalDate.of(2030, 1, 7);
+    private static final TokenSource[] SOURCES = {
+            TokenSource.PAID_PREMIUM, TokenSource.FOLLOW_UP, TokenSource.ONLINE, TokenSource.WALK_IN};
+    private static final int THREADS = 8;
+    private static final long OPERATIONS = Long.getLong("opd.stress.operations", 100_000);
+    private static final List<String> EXPECTED_REJECTIONS = List.of(
+            "Slots full",
+            "No slots available",
+            "Token not found",
+            "Slot not found",
+            "Token is not active",
+            "Token must be ACTIVE or NO_SHOW",
+            "Capacity cannot be below",
+            "Delay would move a slot outside the day",
+            "Slot would overlap the previous slot");
+
+    @Autowired
+    OpdService opdService;
+
+    @Autowired
+    SlotRepository slotRepository;
+
+    @Autowired
+    TokenRepository tokenRepository;
+
+    @Test
+    void concurrentMutationsKeepSlotsAndTokensConsistent() throws Exception {
+        List<String> doctorIds = new ArrayList<>();
+        List<String> slotIds = new ArrayList<>();
+        for (int d = 0; d < 4; d++) {
+            String doctorId = opdService.onboardDoctor("Stress " + d, "Stress").getId();
+            doctorIds.add(doctorId);
+            for (int s = 0; s < 6; s++) {
+                LocalTime start = LocalTime.of(9, 0).plusMinutes(30L * s);
+                slotIds.add(opdService.createSlot(doctorId, DAY, start, start.plusMinutes(30), 4).getId());
+            }
+        }
+
+        Set<String> booked = ConcurrentHashMap.newKeySet();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            long seed = t;
+            workers.add(pool.submit(() -> {
+                SplittableRandom random = new SplittableRandom(seed);
+                List<String> mine = new ArrayList<>();
+                start.await();
+                for (long i = 0; i < OPERATIONS / THREADS; i++) {
+                    try {
+                        mutate(random, doctorIds, slotIds, mine, booked);
+                    } catch (RuntimeException e) {
+                        if (!isBusinessRejection(e)) {
+                            throw e;
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> worker : workers) {
+            worker.get(30, TimeUnit.MINUTES);
+        }
+        pool.shutdown();
+
+        assertConsistent(doctorIds, booked);
+        assertPriorityOrder(doctorIds);
+    }
+
+    private static boolean isBusinessRejection(RuntimeException e) {
+        String message = e.getMessage();
+        return e.getClass() == RuntimeException.class && message != null
+                && EXPECTED_REJECTIONS.stream().anyMatch(message::startsWith);
+    }
+
+    private void mutate(SplittableRandom random, List<String> doctorIds, List<String> slotIds, List<String> mine,
+                        Set<String> booked) {
+        String doctorId = doctorIds.get(random.nextInt(doctorIds.size()));
+        int roll = random.nextInt(100);
+        if (roll < 45 || mine.isEmpty()) {
+            Token token = opdService.bookToken("P", SOURCES[random.nextInt(SOURCES.length)], doctorId, DAY);
+            booked.add(token.getId());
+            mine.add(token.getId());
+        } else if (roll < 55) {
+            List<BookingItem> batch = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                batch.add(new BookingItem("B", SOURCES[random.nextInt(SOURCES.length)], doctorId, DAY));
+            }
+            for (BookingResult result : opdService.bookTokens(batch)) {
+                if (result.isAllocated()) {
+                    booked.add(result.getToken().getId());
+                    mine.add(result.getToken().getId());
+                }
+            }
+        } else if (roll < 70) {
+            opdService.cancelToken(mine.get(random.nextInt(mine.size())));
+        } else if (roll < 82) {
+            opdService.toggleNoShow(mine.get(random.nextInt(mine.size())));
+        } else if (roll < 88) {
+            opdService.completeToken(mine.get(random.nextInt(mine.size())));
+        } else if (roll < 96) {
+            opdService.resizeSlot(slotIds.get(random.nextInt(slotIds.size())), 2 + random.nextInt(5));
+        } else {
+            opdService.delaySlot(slotIds.get(random.nextInt(slotIds.size())), random.nextInt(3));
+        }
+    }
+
+    private void assertConsistent(List<String> doctorIds, Set<String> booked) {
+        Map<String, String> holder = new HashMap<>();
+        for (String doctorId : doctorIds) {
+            for (OpdSlot slot : slotRepository.findByDoctorId(doctorId)) {
+                assertThat(slot.getQueue().occupiedCount())
+                        .as("occupancy of slot %s", slot.getId())
+                        .isLessThanOrEqualTo(slot.getMaxCapacity());
+                for (Token token : slot.getTokens()) {
+                    assertThat(holder.put(token.getId(), slot.getId()))
+                            .as("token %s held by more than one slot", token.getId())
+                            .isNull();
+                    assertThat(token.getAssignedSlotId()).isEqualTo(slot.getId());
+                    assertThat(tokenRepository.findById(token.getId())).isPresent();
+                }
+            }
+        }
+
+        Map<String, Integer> completedBySlot = new HashMap<>();
+        for (String tokenId : booked) {
+            Token token = tokenRepository.findById(tokenId).orElse(null);
+            assertThat(token).as("booked token %s", tokenId).isNotNull();
+            if (token.getStatus() == TokenStatus.CANCELLED) {
+                assertThat(token.getAssignedSlotId()).isNull();
+                assertThat(holder).doesNotContainKey(tokenId);
+            } else if (token.getStatus() == TokenStatus.COMPLETED) {
+                assertThat(holder).doesNotContainKey(tokenId);
+                completedBySlot.merge(token.getAssignedSlotId(), 1, Integer::sum);
+            } else {
+                assertThat(holder.get(tokenId)).as("slot holding token %s", tokenId)
+                        .isNotNull()
+                        .isEqualTo(token.getAssignedSlotId());
+            }
+        }
+        for (String doctorId : doctorIds) {
+            for (OpdSlot slot : slotRepository.findByDoctorId(doctorId)) {
+                assertThat(slot.getQueue().completedCount())
+                        .as("completed count of slot %s", slot.getId())
+                        .isEqualTo(completedBySlot.getOrDefault(slot.getId(), 0));
+            }
+        }
+    }
+
+    private void assertPriorityOrder(List<String> doctorIds) {
+        for (String doctorId : doctorIds) {
+            List<OpdSlot> day = slotRepository.findByDoctorAndDate(doctorId, DAY);
+            Token lowestInFullSlot = null;
+            String fullSlotId = null;
+            for (OpdSlot slot : day) {
+                List<Token> active = slot.getTokens().stream()
+                        .filter(token -> token.getStatus() == TokenStatus.ACTIVE)
+                        .toList();
+                assertThat(active).as("active tokens of slot %s", slot.getId())
+                        .isSortedAccordingTo(Comparator.comparingLong(Token::getSortKey));
+                if (lowestInFullSlot != null && !active.isEmpty()) {
+                    assertThat(active.get(0).getSortKey())
+                            .as("token %s in slot %s outranks %s in full earlier slot %s", active.get(0).getId(),
+                                    slot.getId(), lowestInFullSlot.getId(), fullSlotId)
+                            .isGreaterThan(lowestInFullSlot.getSortKey());
+                }
+                if (slot.getQueue().occupiedCount() >= slot.getMaxCapacity() && !active.isEmpty()) {
+                    Token lowest = active.get(active.size() - 1);
+                    if (lowestInFullSlot == null || lowest.getSortKey() > lowestInFullSlot.getSortKey()) {
+                        lowestInFullSlot = lowest;
+                        fullSlotId = slot.getId();
+                    }
+                }
+            }
+        }
+    }
+}
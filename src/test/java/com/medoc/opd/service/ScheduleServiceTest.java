@@ -0,0 +1,103 @@
+package com.medoc.opd.service;
+
+import com.medoc.opd.model.OpdEvent;
+import com.medoc.opd.model.OpdEventType;
+import com.medoc.opd.model.OpdSlot;
+import com.medoc.opd.model.TokenSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.temporal.TemporalAdjusters;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE,
+        properties = "logging.level.com.medoc.opd=ERROR")
+class ScheduleServiceTest {
+    private static final LocalTime NINE = LocalTime.of(9, 0);
+    private static final LocalTime TEN = LocalTime.of(10, 0);
+
+    @Autowired
+    OpdService opdService;
+
+    @Autowired
+    ScheduleService scheduleService;
+
+    @Test
+    void readingADayWithoutATemplateDoesNotBlockALaterTemplate() {
+        String doctorId = opdService.onboardDoctor("Templates", "Neurology").getId();
+        LocalDate tuesday = next(DayOfWeek.TUESDAY);
+        scheduleService.addTemplate(doctorId, DayOfWeek.MONDAY, NINE, TEN, 30, 2);
+
+        assertThat(opdService.getDoctorSlots(doctorId, tuesday)).isEmpty();
+        assertThat(scheduleService.generate(tuesday, tuesday)).isZero();
+
+        scheduleService.addTemplate(doctorId, DayOfWeek.TUESDAY, NINE, TEN, 30, 2);
+        assertThat(opdService.getDoctorSlots(doctorId, tuesday)).hasSize(2);
+        assertThat(scheduleService.generate(tuesday, tuesday)).isZero();
+    }
+
+    @Test
+    void deletedTemplateSlotsAreNotRegenerated() {
+        String doctorId = opdService.onboardDoctor("Templates", "Nephrology").getId();
+        LocalDate wednesday = next(DayOfWeek.WEDNESDAY);
+        scheduleService.addTemplate(doctorId, DayOfWeek.WEDNESDAY, NINE, TEN, 60, 2);
+
+        OpdSlot generated = opdService.getDoctorSlots(doctorId, wednesday).get(0);
+        opdService.deleteSlot(generated.getId());
+
+        assertThat(opdService.getDoctorSlots(doctorId, wednesday)).isEmpty();
+    }
+
+    @Test
+    void earliestBookingSeesTemplatesAddedAfterAnEarlierLookup() {
+        String doctorId = opdService.onboardDoctor("Templates", "Rheumatology").getId();
+        LocalDate thursday = next(DayOfWeek.THURSDAY);
+        scheduleService.addTemplate(doctorId, DayOfWeek.MONDAY, NINE, TEN, 30, 2);
+
+        assertThat(opdService.getDoctorSlots(doctorId, thursday)).isEmpty();
+        scheduleService.addTemplate(doctorId, DayOfWeek.THURSDAY, NINE, TEN, 30, 2);
+
+        assertThat(opdService.bookEarliest("P", TokenSource.ONLINE, "rheumatology ", thursday).getAssignedSlotId())
+                .isNotNull();
+    }
+
+    @Test
+    void manualSlotsMayNotOverlapTemplateOrManualSlots() {
+        String doctorId = opdService.onboardDoctor("Templates", "Urology").getId();
+        LocalDate friday = next(DayOfWeek.FRIDAY);
+        scheduleService.addTemplate(doctorId, DayOfWeek.FRIDAY, NINE, TEN, 30, 2);
+
+        assertThatThrownBy(() -> opdService.createSlot(doctorId, friday, LocalTime.of(9, 45), LocalTime.of(10, 15), 2))
+                .hasMessageContaining("overlaps");
+        opdService.createSlot(doctorId, friday, TEN, LocalTime.of(10, 30), 2);
+        assertThatThrownBy(() -> opdService.createSlot(doctorId, friday, LocalTime.of(10, 15), LocalTime.of(11, 0), 2))
+                .hasMessageContaining("overlaps");
+
+        assertThat(opdService.getDoctorSlots(doctorId, friday)).extracting(OpdSlot::getStartTime)
+                .containsExactly(NINE, LocalTime.of(9, 30), TEN);
+    }
+
+    @Test
+    void archivingADayForgetsItWasMaterialized() {
+        String doctorId = opdService.onboardDoctor("Templates", "Oncology").getId();
+        LocalDate friday = next(DayOfWeek.FRIDAY);
+        scheduleService.addTemplate(doctorId, DayOfWeek.FRIDAY, NINE, TEN, 60, 2);
+        OpdSlot generated = opdService.getDoctorSlots(doctorId, friday).get(0);
+        opdService.deleteSlot(generated.getId());
+        assertThat(opdService.getDoctorSlots(doctorId, friday)).isEmpty();
+
+        scheduleService.onEvent(OpdEvent.forSlot(OpdEventType.SLOT_ARCHIVED, generated));
+
+        assertThat(opdService.getDoctorSlots(doctorId, friday)).hasSize(1);
+    }
+
+    private static LocalDate next(DayOfWeek dayOfWeek) {
+        return LocalDate.now().with(TemporalAdjusters.next(dayOfWeek));
+    }
+}
@@ -0,0 +1,30 @@
+package com.medoc.opd.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SnowflakeIdGeneratorTest {
+
+    @Test
+    void idsSortAfterARecoveredIdFromAheadOfTheClock() {
+        SnowflakeIdGenerator recovered = new SnowflakeIdGenerator(3, 1);
+        long ahead = recovered.nextId() + (60_000L << 22);
+
+        recovered.advancePastKey(Long.toString(ahead, Character.MAX_RADIX));
+        recovered.advancePastKey("3f2504e0-4f89-11d3-9a0c-0305e82c3301");
+
+        long next = recovered.nextId();
+        assertThat(next).isGreaterThan(ahead);
+        assertThat(recovered.nextId()).isGreaterThan(next);
+    }
+
+    @Test
+    void multiNodeDeploymentsMustNameTheNode() {
+        assertThatThrownBy(() -> new SnowflakeIdGenerator(-1, 2)).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> new SnowflakeIdGenerator(2, 2)).isInstanceOf(IllegalArgumentException.class);
+        assertThat(new SnowflakeIdGenerator(-1, 1).nextId()).isPositive();
+        assertThat(new SnowflakeIdGenerator(1, 2).nextId()).isPositive();
+    }
+}